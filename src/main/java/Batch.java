@@ -1,68 +1,75 @@
 import java.util.ArrayList;
 import java.util.List;
-import java.util.OptionalDouble;
-import java.util.stream.DoubleStream;
 
 public class Batch {
+    // a batch is a view on a contiguous range of the end-sorted traces of its segment, which must not be reordered
+    public List<Trace> segmentTraces;
+    public int offset;
     public int size;
-    public List<Trace> traces;
-    public List<String> caseIDs;
-    public double[] interArrivalTimes;
     //mean and standard deviation inter-arrival time within batch
     public double meanInterArrivalTime; public double sdInterArrivalTime;
     public long startWaitFirstCase; public long startWaitLastCase; //segment entry of first and last case
     public long endWait; //batch processing start (simultaneous batch)
-    public double[] waitingTimes;
     //mean-, standard deviation-, minimum- and maximum waiting time
     public double meanWaitingTime; public double sdWaitingTime; public double maxWaitingTime; public double minWaitingTime;
+    //50th, 90th and 99th percentile waiting time
+    public double p50WaitingTime; public double p90WaitingTime; public double p99WaitingTime;
 
     public Batch(List<Trace> traces) {
-        this.size = traces.size();
-        this.traces = new ArrayList<>();
-        for (int i = 0; i < traces.size(); i++) {
-            this.traces.add(traces.get(i));
-        }
-        this.caseIDs = new ArrayList<>();
-        for (int i = 0; i < traces.size(); i++) {
-            this.caseIDs.add(traces.get(i).getCaseID());
-        }
-        this.interArrivalTimes = new double[traces.size()-1];
-        for (int i = 0; i < interArrivalTimes.length; i++) {
-            this.interArrivalTimes[i] = 1.0*(traces.get(i+1).getStart() - traces.get(i).getStart())/3600000;
-        }
-        this.startWaitFirstCase = traces.get(0).getStart();
-        for (int i = 0; i < traces.size(); i++) {
-            if (traces.get(i).getStart() < this.startWaitFirstCase) {
-                this.startWaitFirstCase = traces.get(i).getStart();
+        this(traces, 0, traces.size());
+    }
+
+    public Batch(List<Trace> segmentTraces, int offset, int size) {
+        this.segmentTraces = segmentTraces;
+        this.offset = offset;
+        this.size = size;
+
+        // all aggregates in a single pass over the range (Welford updates for the means and standard deviations)
+        Trace first = segmentTraces.get(offset);
+        this.startWaitFirstCase = first.getStart();
+        this.startWaitLastCase = first.getStart();
+        this.endWait = first.getEnd();
+        this.minWaitingTime = Double.POSITIVE_INFINITY;
+        this.maxWaitingTime = Double.NEGATIVE_INFINITY;
+        double waitingTimeM2 = 0.0;
+        double interArrivalTimeM2 = 0.0;
+        long previousStart = first.getStart();
+        for (int i = 0; i < size; i++) {
+            Trace trace = segmentTraces.get(offset + i);
+            long start = trace.getStart();
+            if (start < this.startWaitFirstCase) {
+                this.startWaitFirstCase = start;
             }
-        }
-        this.startWaitLastCase = traces.get(0).getStart();
-        for (int i = 0; i < traces.size(); i++) {
-            if (traces.get(i).getStart() > this.startWaitLastCase) {
-                this.startWaitLastCase = traces.get(i).getStart();
+            if (start > this.startWaitLastCase) {
+                this.startWaitLastCase = start;
             }
-        }
-        this.endWait = traces.get(0).getEnd();
-        for (int i = 0; i < traces.size(); i++) {
-            if (traces.get(i).getEnd() > this.endWait) {
-                this.endWait = traces.get(i).getEnd();
+            if (trace.getEnd() > this.endWait) {
+                this.endWait = trace.getEnd();
             }
+            double waitingTime = 1.0 * trace.getDuration() / 3600000;
+            if (waitingTime < this.minWaitingTime) {
+                this.minWaitingTime = waitingTime;
+            }
+            if (waitingTime > this.maxWaitingTime) {
+                this.maxWaitingTime = waitingTime;
+            }
+            double delta = waitingTime - this.meanWaitingTime;
+            this.meanWaitingTime += delta / (i + 1);
+            waitingTimeM2 += delta * (waitingTime - this.meanWaitingTime);
+            if (i > 0) {
+                double interArrivalTime = 1.0 * (start - previousStart) / 3600000;
+                delta = interArrivalTime - this.meanInterArrivalTime;
+                this.meanInterArrivalTime += delta / i;
+                interArrivalTimeM2 += delta * (interArrivalTime - this.meanInterArrivalTime);
+            }
+            previousStart = start;
         }
-        this.waitingTimes = new double[traces.size()];
-        for (int i = 0; i < traces.size(); i++) {
-            waitingTimes[i] = 1.0*(traces.get(i).getDuration())/3600000;
-        }
-        OptionalDouble max = DoubleStream.of(this.waitingTimes).max();
-        if (max.isPresent()) {
-            this.maxWaitingTime = max.getAsDouble();
-        } else {
-            this.maxWaitingTime = Double.NaN;
-        }
-        OptionalDouble min = DoubleStream.of(this.waitingTimes).min();
-        if (min.isPresent()) {
-            this.minWaitingTime = min.getAsDouble();
+        this.sdWaitingTime = Math.sqrt(waitingTimeM2 / size);
+        if (size > 1) {
+            this.sdInterArrivalTime = Math.sqrt(interArrivalTimeM2 / (size - 1));
         } else {
-            this.minWaitingTime = Double.NaN;
+            this.meanInterArrivalTime = Double.NaN;
+            this.sdInterArrivalTime = Double.NaN;
         }
     }
 
@@ -75,11 +82,19 @@ public class Batch {
         return size;
     }
 
+    public int getOffset() {
+        return offset;
+    }
+
     public List<Trace> getTraces() {
-        return traces;
+        return segmentTraces.subList(offset, offset + size);
     }
 
     public List<String> getCaseIDs() {
+        List<String> caseIDs = new ArrayList<>(size);
+        for (int i = offset; i < offset + size; i++) {
+            caseIDs.add(segmentTraces.get(i).getCaseID());
+        }
         return caseIDs;
     }
 
@@ -109,9 +124,19 @@ public class Batch {
      *****************************************************************
      */
     public double[] getWaitingTimes() {
+        double[] waitingTimes = new double[size];
+        for (int i = 0; i < size; i++) {
+            waitingTimes[i] = 1.0 * (segmentTraces.get(offset + i).getDuration()) / 3600000;
+        }
         return waitingTimes;
     }
 
+    public void addWaitingTimesTo(QuantileSketch sketch) {
+        for (int i = offset; i < offset + size; i++) {
+            sketch.add(1.0 * (segmentTraces.get(i).getDuration()) / 3600000);
+        }
+    }
+
     public double getMeanWaitingTime() {
         return meanWaitingTime;
     }
@@ -128,15 +153,44 @@ public class Batch {
         this.sdWaitingTime = sdWaitingTime;
     }
 
+    public double getP50WaitingTime() {
+        return p50WaitingTime;
+    }
+
+    public double getP90WaitingTime() {
+        return p90WaitingTime;
+    }
+
+    public double getP99WaitingTime() {
+        return p99WaitingTime;
+    }
+
+    public void setWaitingTimePercentiles(QuantileSketch sketch) {
+        this.p50WaitingTime = sketch.getQuantile(0.5);
+        this.p90WaitingTime = sketch.getQuantile(0.9);
+        this.p99WaitingTime = sketch.getQuantile(0.99);
+    }
+
     /**
      *****************************************************************
      *************** METHODS FOR INTERARRIVAL TIMES ******************
      *****************************************************************
      */
     public double[] getInterArrivalTimes() {
+        double[] interArrivalTimes = new double[size - 1];
+        for (int i = 0; i < interArrivalTimes.length; i++) {
+            interArrivalTimes[i] = 1.0 * (segmentTraces.get(offset + i + 1).getStart() - segmentTraces.get(offset + i).getStart()) / 3600000;
+        }
         return interArrivalTimes;
     }
 
+    public RunningStatistics getInterArrivalStatistics() {
+        if (size < 2) {
+            return new RunningStatistics();
+        }
+        return new RunningStatistics(size - 1, meanInterArrivalTime, sdInterArrivalTime * sdInterArrivalTime * (size - 1));
+    }
+
     public double getMeanInterArrivalTime() {
         return meanInterArrivalTime;
     }
@@ -152,4 +206,4 @@ public class Batch {
     public void setSdInterArrivalTime(double sdInterArrivalTime) {
         this.sdInterArrivalTime = sdInterArrivalTime;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,222 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class BatchIntervalIndex {
+    public static final int MAGIC = 0x42494958; //"BIIX"
+    public static final int VERSION = 1;
+
+    // waiting intervals [startWaitFirstCase, endWait] of the batches of a segment, sorted by start
+    public long[] starts;
+    public long[] ends;
+    public int[] batchNumbers;
+    // all end times, sorted, for counting
+    public long[] sortedEnds;
+    // segment tree over the start-sorted intervals holding the maximum end time per node, leaves from position size
+    public long[] maxEnds;
+    public int size;
+
+    public BatchIntervalIndex(long[] starts, long[] ends, int[] batchNumbers) {
+        Integer[] order = new Integer[starts.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> starts[i]).thenComparingLong(i -> ends[i]));
+        this.starts = new long[starts.length];
+        this.ends = new long[starts.length];
+        this.batchNumbers = new int[starts.length];
+        for (int i = 0; i < order.length; i++) {
+            this.starts[i] = starts[order[i]];
+            this.ends[i] = ends[order[i]];
+            this.batchNumbers[i] = batchNumbers[order[i]];
+        }
+        this.sortedEnds = this.ends.clone();
+        Arrays.sort(this.sortedEnds);
+
+        this.size = 1;
+        while (size < starts.length) {
+            size <<= 1;
+        }
+        this.maxEnds = new long[2 * size];
+        Arrays.fill(maxEnds, Long.MIN_VALUE);
+        for (int i = 0; i < starts.length; i++) {
+            maxEnds[size + i] = this.ends[i];
+        }
+        for (int i = size - 1; i >= 1; i--) {
+            maxEnds[i] = Math.max(maxEnds[2 * i], maxEnds[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Builds the index over the waiting intervals of the batches of a mined segment (batch numbers start at 1, as in
+     * batch_statistics.csv)
+     *
+     * @param segment
+     * @return index
+     */
+    public static BatchIntervalIndex build(Segment segment) {
+        List<Batch> batches = segment.getBatches();
+        long[] starts = new long[batches.size()];
+        long[] ends = new long[batches.size()];
+        int[] batchNumbers = new int[batches.size()];
+        for (int i = 0; i < batches.size(); i++) {
+            starts[i] = batches.get(i).getStartWaitFirstCase();
+            ends[i] = batches.get(i).getEndWait();
+            batchNumbers[i] = i + 1;
+        }
+        return new BatchIntervalIndex(starts, ends, batchNumbers);
+    }
+
+    public int getNrBatches() {
+        return starts.length;
+    }
+
+    /**
+     * Returns the number of batches waiting at time t (the batch queue length)
+     *
+     * @param t
+     * @return count
+     */
+    public int countWaitingAt(long t) {
+        return countOverlapping(t, t);
+    }
+
+    /**
+     * Returns the number of batches whose waiting interval overlaps [t1, t2]: those that started waiting at or before
+     * t2, minus those that were released before t1
+     *
+     * @param t1
+     * @param t2
+     * @return count
+     */
+    public int countOverlapping(long t1, long t2) {
+        return upperBound(starts, t2) - lowerBound(sortedEnds, t1);
+    }
+
+    /**
+     * Lists the numbers of the batches whose waiting interval overlaps [t1, t2], ordered by start of waiting
+     *
+     * @param t1
+     * @param t2
+     * @return batch numbers
+     */
+    public List<Integer> findOverlapping(long t1, long t2) {
+        List<Integer> found = new ArrayList<>();
+        int limit = upperBound(starts, t2); //only intervals starting at or before t2 qualify
+        if (limit > 0) {
+            collect(1, 0, size, limit, t1, found);
+        }
+        return found;
+    }
+
+    public void collect(int node, int from, int to, int limit, long t1, List<Integer> found) {
+        if (from >= limit || maxEnds[node] < t1) {
+            return;
+        }
+        if (to - from == 1) {
+            found.add(batchNumbers[from]);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        collect(2 * node, from, middle, limit, t1, found);
+        collect(2 * node + 1, middle, to, limit, t1, found);
+    }
+
+    // number of values <= key
+    public static int upperBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // number of values < key
+    public static int lowerBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the path of the index of a segment, next to its annotated log
+     *
+     * @param name
+     * @param outputDirectory
+     * @return pathName
+     */
+    public static String getIndexPathName(String name, String outputDirectory) {
+        String[] events = BatchMiner.splitSegmentName(name);
+        return outputDirectory + "\\Index\\segment_" + events[0] + "_" + events[1] + ".idx";
+    }
+
+    public void write(String pathName) throws Exception {
+        Path path = Paths.get(pathName);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(starts.length);
+            for (int i = 0; i < starts.length; i++) {
+                out.writeLong(starts[i]);
+                out.writeLong(ends[i]);
+                out.writeInt(batchNumbers[i]);
+            }
+        }
+    }
+
+    public static BatchIntervalIndex read(String pathName) throws Exception {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(pathName))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(pathName + " is no batch interval index of version " + VERSION);
+            }
+            int n = in.readInt();
+            long[] starts = new long[n];
+            long[] ends = new long[n];
+            int[] batchNumbers = new int[n];
+            for (int i = 0; i < n; i++) {
+                starts[i] = in.readLong();
+                ends[i] = in.readLong();
+                batchNumbers[i] = in.readInt();
+            }
+            return new BatchIntervalIndex(starts, ends, batchNumbers);
+        }
+    }
+
+    /**
+     * Main method: queries a persisted index. Times are UNIX timestamps in milliseconds.
+     *
+     * Arguments: indexFile at t | indexFile overlap t1 t2
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String args[]) throws Exception {
+        BatchIntervalIndex index = read(args[0]);
+        if (args[1].equals("at")) {
+            System.out.println(index.countWaitingAt(Long.parseLong(args[2])));
+        } else if (args[1].equals("overlap")) {
+            long t1 = Long.parseLong(args[2]);
+            long t2 = Long.parseLong(args[3]);
+            System.out.println(index.countOverlapping(t1, t2) + " batches: " + index.findOverlapping(t1, t2));
+        } else {
+            throw new IllegalArgumentException("Expected at or overlap, not " + args[1]);
+        }
+    }
+}
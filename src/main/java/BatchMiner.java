@@ -2,18 +2,34 @@
  * Performance Mining for Batch Processing Using the Performance Spectrum
  */
 
-import com.opencsv.*;
-import io.reactivex.Observable;
 
 import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.stream.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.concurrent.TimeUnit;
 import java.text.SimpleDateFormat;
 
 public class BatchMiner {
+    // statistics tables, each written to the "Statistics" output folder
+    public static final String SEGMENT_STATISTICS = "segment_statistics.csv";
+    public static final String BATCH_STATISTICS = "batch_statistics.csv";
+    public static final String WAITING_TIME_HISTOGRAMS = "waiting_time_histograms.csv";
+    public static final String LOAD_PROFILE = "load_profile.csv";
+    public static final long DEFAULT_BUCKET_WIDTH = 3600000L; //one hour
+    public static final long MINUTE = 60000L; //resolution of the bucket labels of the load profile
+    public static final Map<String, String> TABLE_HEADERS = new LinkedHashMap<>();
+
+    static {
+        TABLE_HEADERS.put(SEGMENT_STATISTICS, "segmentKey,n,BF,m,mu_k,sigma_k,mu_BI,sigma_BI,mu_{IA},sigma_{IA},mu_{IA_b},sigma_{IA_b},mu_{IA_nb},sigma_{IA_nb},mu_{IAIB},sigma_{IAIB},mu_{Wo_b},sigma_{Wo_b},mu_{Wo_nb},sigma_{Wo_nb},p50_{Wo_b},p90_{Wo_b},p99_{Wo_b},p50_{Wo_nb},p90_{Wo_nb},p99_{Wo_nb}");
+        TABLE_HEADERS.put(BATCH_STATISTICS, "segmentKey,i,k_i,t_{bi_dep},mu_{IBIA_i},sigma{IBIA_i},mu_{Wo_bi},sigma{Wo_bi},W_{i_min},W{i_max},p50_{Wo_bi},p90_{Wo_bi},p99_{Wo_bi}");
+        TABLE_HEADERS.put(WAITING_TIME_HISTOGRAMS, "segmentKey,cases,W_lower,W_upper,count");
+        TABLE_HEADERS.put(LOAD_PROFILE, "segmentKey,bucketStart,bucketEnd,entering,waiting,released,batchDepartures");
+    }
+
     public String directory;
     public String segment;
 
@@ -23,36 +39,35 @@ public class BatchMiner {
     }
 
     /**
-     * Traverses all directories and its CSV files and filters out traces corresponding to segment name and time window
+     * Traverses all directories and lists the segments of their CSV files, once per segment even if it is split over
+     * files in several directories
      *
      * @param directory
-     * @return
+     * @return segments, sorted by name
      * @throws Exception
      */
     public static List<String> listSegments(String directory) throws Exception {
-        Path path = Paths.get(directory);
-
-        List<String> segments = new ArrayList<>();
-
-        Files.walkFileTree(path, new FileVisitor<Path>() {
-
-            @Override
-            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        return new ArrayList<>(listSegmentFiles(directory).keySet());
+    }
 
-                return FileVisitResult.CONTINUE;
-            }
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                return FileVisitResult.CONTINUE;
-            }
+    /**
+     * Traverses all directories once and groups their CSV files by segment. Files not named after a segment
+     * ("A!B.csv" for segment A:B) are ignored. Segments and their files are sorted by name, so every run (single
+     * process, sharded or on another machine) sees the same order, whatever the order of the directory walk.
+     *
+     * @param directory
+     * @return files by segment, both sorted
+     * @throws Exception
+     */
+    public static Map<String, List<Path>> listSegmentFiles(String directory) throws Exception {
+        Map<String, List<Path>> segmentFiles = new TreeMap<>();
+        Files.walkFileTree(Paths.get(directory), new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                String segmentName = file.getFileName().toString();
-                segmentName = segmentName.substring(0, segmentName.length() - 4);
-                int index = segmentName.indexOf("!");
-                segmentName = segmentName.substring(0, index) + ':' + segmentName.substring(index + 1);
-                segments.add(segmentName);
-
+                String segmentName = getSegmentName(file);
+                if (segmentName != null) {
+                    segmentFiles.computeIfAbsent(segmentName, segment -> new ArrayList<>()).add(file);
+                }
                 return FileVisitResult.CONTINUE;
             }
             @Override
@@ -61,7 +76,29 @@ public class BatchMiner {
                 return FileVisitResult.CONTINUE;
             }
         });
-        return segments;
+        for (List<Path> files : segmentFiles.values()) {
+            Collections.sort(files);
+        }
+        return segmentFiles;
+    }
+
+    /**
+     * Returns the segment of a CSV file from its name, e.g. A:B for "A!B.csv"
+     *
+     * @param file
+     * @return segment, or null if the file is not named after a segment
+     */
+    public static String getSegmentName(Path file) {
+        String segmentName = file.getFileName().toString();
+        if (!segmentName.endsWith(".csv")) {
+            return null;
+        }
+        segmentName = segmentName.substring(0, segmentName.length() - 4);
+        int index = segmentName.indexOf("!");
+        if (index < 0) {
+            return null;
+        }
+        return segmentName.substring(0, index) + ':' + segmentName.substring(index + 1);
     }
 
     /**
@@ -73,63 +110,83 @@ public class BatchMiner {
      * @throws Exception
      */
     public static List<Trace> filterSegments(String directory, String segment) throws Exception {
-        Path path = Paths.get(directory);
+        return filterSegments(listSegmentFiles(directory, segment), segment);
+    }
 
-        List<Observable<Trace>> filePipes = new ArrayList<>();
-        List<Trace> allTraces = new ArrayList<Trace>();
+    /**
+     * Reads the traces of a segment from its CSV files, concurrently (see ConcurrentFileLoader)
+     *
+     * @param files
+     * @param segment
+     * @return traces, in the order of the files
+     * @throws Exception
+     */
+    public static List<Trace> filterSegments(List<Path> files, String segment) throws Exception {
+        return ConcurrentFileLoader.load(files, segment);
+    }
 
-        Files.walkFileTree(path, new FileVisitor<Path>() {
+    /**
+     * Traverses all directories and lists the CSV files that contain observations of the given segment
+     *
+     * @param directory
+     * @param segment
+     * @return files
+     * @throws Exception
+     */
+    public static List<Path> listSegmentFiles(String directory, String segment) throws Exception {
+        return listSegmentFiles(directory).getOrDefault(segment, new ArrayList<>());
+    }
 
-            @Override
-            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+    /**
+     * Sorts the observations of a segment and partitions them into batches, with a load profile of one-hour buckets
+     *
+     * @param name
+     * @param allTraces
+     * @param minBatchSize
+     * @param nonFIFO
+     * @return segment
+     */
+    public static Segment mineSegment(String name, List<Trace> allTraces, int minBatchSize, String nonFIFO) {
+        return mineSegment(name, allTraces, minBatchSize, nonFIFO, DEFAULT_BUCKET_WIDTH);
+    }
 
-                return FileVisitResult.CONTINUE;
-            }
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                return FileVisitResult.CONTINUE;
-            }
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+    /**
+     * Sorts the observations of a segment and partitions them into batches; the load profile is calculated from the
+     * same sorted orders (see calculateLoadProfile)
+     *
+     * @param name
+     * @param allTraces
+     * @param minBatchSize
+     * @param nonFIFO
+     * @param bucketWidth of the load profile, in milliseconds
+     * @return segment
+     */
+    public static Segment mineSegment(String name, List<Trace> allTraces, int minBatchSize, String nonFIFO, long bucketWidth) {
+        //Sort list first on trace start times (for non-batch statistics)
+        allTraces.sort(Comparator.comparing(Trace::getStart));
+        double[] allCaseInterArrivalTimes = calculateAllCaseInterArrivalTimes(allTraces);
+        long[] starts = new long[allTraces.size()];
+        for (int i = 0; i < allTraces.size(); i++) {
+            starts[i] = allTraces.get(i).getStart();
+        }
 
-                String segmentName = file.getFileName().toString();
-                segmentName = segmentName.substring(0, segmentName.length() - 4);
-                int index = segmentName.indexOf("!");
-                segmentName = segmentName.substring(0, index) + ':' + segmentName.substring(index + 1);
-
-                if (segment.equals(segmentName)) {
-
-                    String fileName = file.toString();
-                    CSVReader reader = new CSVReader(new FileReader(fileName), ',');
-
-                    Observable<Trace> filePipe = Observable
-                            .fromIterable(reader)
-                            .filter((String[] csvRow) -> segment.equals(csvRow[1]))
-                            .map(csvRow -> {
-                                long start, duration;
-                                String caseID;
-                                caseID = csvRow[0];
-                                start = Long.parseLong(csvRow[2]);
-                                duration = Long.parseLong(csvRow[3]);
-                                Trace trace = new Trace(caseID, start, duration);
-                                return trace;
-                            });
-                    filePipes.add(filePipe);
-                }
-                return FileVisitResult.CONTINUE;
-            }
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-//                    System.out.println("Visit Failed File: "+file);
-                return FileVisitResult.CONTINUE;
-            }
-        });
+        List<Batch> batches;
 
-        allTraces = Observable.merge(filePipes)
-                .toList()
-                .blockingGet();
+        // Different procedure for BPI17, using non-FIFO 12h time-window for batching
+        if (nonFIFO.equals("y")) {
+            //Sort list of trace information first by end time, then by start time (for the actual batching)
+            allTraces.sort(Comparator.comparing(Trace::getEndRounded).thenComparing(Trace::getStart));
+            //List all batches based on algorithm
+            batches = listBatchesRounded(allTraces, minBatchSize);
+        } else {
+            allTraces.sort(Comparator.comparing(Trace::getEnd).thenComparing(Trace::getStart));
+            batches = listBatches(allTraces, minBatchSize);
+        }
 
-        return allTraces;
+        //Create segment object based on traces and batches
+        Segment segment = new Segment(name, allTraces, batches, allCaseInterArrivalTimes);
+        segment.setLoadProfile(calculateLoadProfile(name, starts, allTraces, batches, nonFIFO.equals("y"), bucketWidth));
+        return segment;
     }
 
     /**
@@ -183,35 +240,7 @@ public class BatchMiner {
      * @return
      */
     public static List<Batch> listBatches(List<Trace> allTraces, int minBatchSize) {
-        List<Batch> batches = new ArrayList<>();
-        List<Trace> tracesInBatch = new ArrayList<>();
-        Batch batch;
-
-        tracesInBatch.add(allTraces.get(0));
-
-        for (int i = 0; i < allTraces.size() - 1; i++) {
-            if ((allTraces.get(i).getEnd() == allTraces.get(i + 1).getEnd()) && (allTraces.get(i + 1).getStart() - allTraces.get(i).getStart() >= 0)) {
-                tracesInBatch.add(allTraces.get(i + 1));
-                if (i == allTraces.size() - 2 && tracesInBatch.size() >= minBatchSize) {
-                    batch = new Batch(tracesInBatch);
-                    batches.add(batch);
-                    for (int j = 0; j < tracesInBatch.size(); j++) {
-                        tracesInBatch.get(j).setBatched(true);
-                    }
-                }
-            } else {
-                if (tracesInBatch.size() >= minBatchSize) {
-                    batch = new Batch(tracesInBatch);
-                    batches.add(batch);
-                    for (int j = 0; j < tracesInBatch.size(); j++) {
-                        tracesInBatch.get(j).setBatched(true);
-                    }
-                }
-                tracesInBatch.clear();
-                tracesInBatch.add(allTraces.get(i + 1));
-            }
-        }
-        return batches;
+        return detectBatches(allTraces, minBatchSize, false);
     }
 
     /**
@@ -222,37 +251,47 @@ public class BatchMiner {
      * @return
      */
     public static List<Batch> listBatchesRounded(List<Trace> allTraces, int minBatchSize) {
-        List<Batch> batches = new ArrayList<>();
-        List<Trace> tracesInBatch = new ArrayList<>();
-        Batch batch;
+        return detectBatches(allTraces, minBatchSize, true);
+    }
 
-        tracesInBatch.add(allTraces.get(0));
+    /**
+     * Scans the sorted observations for runs of equal (rounded) end time; every run of at least minBatchSize
+     * observations becomes a batch viewing that range of allTraces, without copying it
+     *
+     * @param allTraces
+     * @param minBatchSize
+     * @param rounded
+     * @return batches
+     */
+    public static List<Batch> detectBatches(List<Trace> allTraces, int minBatchSize, boolean rounded) {
+        List<Batch> batches = new ArrayList<>();
+        int batchStart = 0;
+        long end = rounded ? allTraces.get(0).getEndRounded() : allTraces.get(0).getEnd();
 
         for (int i = 0; i < allTraces.size() - 1; i++) {
-            if ((allTraces.get(i).getEndRounded() == allTraces.get(i + 1).getEndRounded()) && (allTraces.get(i + 1).getStart() - allTraces.get(i).getStart() >= 0)) {
-                tracesInBatch.add(allTraces.get(i + 1));
-                if (i == allTraces.size() - 2 && tracesInBatch.size() >= minBatchSize) {
-                    batch = new Batch(tracesInBatch);
-                    batches.add(batch);
-                    for (int j = 0; j < tracesInBatch.size(); j++) {
-                        tracesInBatch.get(j).setBatched(true);
-                    }
+            long nextEnd = rounded ? allTraces.get(i + 1).getEndRounded() : allTraces.get(i + 1).getEnd();
+            if ((end == nextEnd) && (allTraces.get(i + 1).getStart() - allTraces.get(i).getStart() >= 0)) {
+                if (i == allTraces.size() - 2 && i + 2 - batchStart >= minBatchSize) {
+                    addBatch(batches, allTraces, batchStart, i + 2);
                 }
             } else {
-                if (tracesInBatch.size() >= minBatchSize) {
-                    batch = new Batch(tracesInBatch);
-                    batches.add(batch);
-                    for (int j = 0; j < tracesInBatch.size(); j++) {
-                        tracesInBatch.get(j).setBatched(true);
-                    }
+                if (i + 1 - batchStart >= minBatchSize) {
+                    addBatch(batches, allTraces, batchStart, i + 1);
                 }
-                tracesInBatch.clear();
-                tracesInBatch.add(allTraces.get(i + 1));
+                batchStart = i + 1;
             }
+            end = nextEnd;
         }
         return batches;
     }
 
+    public static void addBatch(List<Batch> batches, List<Trace> allTraces, int from, int to) {
+        batches.add(new Batch(allTraces, from, to - from));
+        for (int j = from; j < to; j++) {
+            allTraces.get(j).setBatched(true);
+        }
+    }
+
     /**
      * Calculates the mean of an array of values
      *
@@ -260,7 +299,7 @@ public class BatchMiner {
      * @return mean
      */
     public static double calculateMean(double[] A) {
-        double mean = 1.0 * DoubleStream.of(A).sum() / A.length;
+        double mean = RunningStatistics.of(A).getMean();
         return mean;
     }
 
@@ -271,17 +310,32 @@ public class BatchMiner {
      * @return standardDeviation
      */
     public static double calculateStandardDeviation(double[] A) {
+        double standardDeviation = RunningStatistics.of(A).getStandardDeviation();
+        return standardDeviation;
+    }
 
-        double mean = 1.0 * DoubleStream.of(A).sum() / A.length;
-        double[] variances = new double[A.length];
+    /**
+     * Formats mean and standard deviation of an array of values as two CSV fields, computed in a single (parallel) pass
+     *
+     * @param A
+     * @return meanAndStandardDeviation
+     */
+    public static String formatMeanAndStandardDeviation(double[] A) {
+        RunningStatistics statistics = RunningStatistics.of(A);
+        return statistics.getMean() + "," + statistics.getStandardDeviation();
+    }
 
-        for (int i = 0; i < A.length; i++) {
-            variances[i] = 1.0 * A[i] - mean;
-            variances[i] = variances[i] * variances[i];
+    /**
+     * Formats the 50th, 90th and 99th percentile of a sketch as three CSV fields, or dashes if the sketch is empty
+     *
+     * @param sketch
+     * @return percentiles
+     */
+    public static String formatPercentiles(QuantileSketch sketch) {
+        if (sketch.getCount() == 0) {
+            return "-,-,-";
         }
-        double variance = DoubleStream.of(variances).sum() / A.length;
-        double standardDeviation = Math.sqrt(variance);
-        return standardDeviation;
+        return sketch.getQuantile(0.5) + "," + sketch.getQuantile(0.9) + "," + sketch.getQuantile(0.99);
     }
 
     /**
@@ -313,107 +367,300 @@ public class BatchMiner {
      * @throws Exception
      */
     public static void calculateAndPrintSegmentStatistics(List<Segment> segments, String outputDirectory, long startTime) throws Exception {
-        String pathName = outputDirectory + "\\Statistics\\segment_statistics.csv";
+        String pathName = outputDirectory + "\\Statistics\\" + SEGMENT_STATISTICS;
 
         FileWriter fw = new FileWriter(pathName);
-        fw.write("segmentKey,n,BF,m,mu_k,sigma_k,mu_BI,sigma_BI,mu_{IA},sigma_{IA},mu_{IA_b},sigma_{IA_b},mu_{IA_nb},sigma_{IA_nb},mu_{IAIB},sigma_{IAIB},mu_{Wo_b},sigma_{Wo_b},mu_{Wo_nb},sigma_{Wo_nb}");
+        fw.write(TABLE_HEADERS.get(SEGMENT_STATISTICS));
         fw.write("\n");
 
         for (int i = 0; i < segments.size(); i++) {
-            Segment segment = segments.get(i);
-            List<Batch> batches = segment.getBatches();
-            List<Trace> traces = segment.getTraces();
-
-            if (batches.size() > 0) {
-                segment.setBatchedTraces(batches);
-                if (segment.getBatchedTraces().size() < segment.getTraces().size()) {
-                    segment.setNonBatchedTraces(segment.getBatchedTraces(), traces);
-                }
-            } else if (batches.size() == 0) {
-//                System.out.println("No batches found in segment " + segment.getName());
-                segment.setNonBatchedTracesNoBatches(traces);
+            fw.write(calculateSegmentStatistics(segments.get(i)));
+            fw.write("\n");
+        }
+        fw.flush();
+        fw.close();
+    }
+
+    /**
+     * Calculates the statistics of a single segment as a row of segment_statistics.csv
+     *
+     * @param segment
+     * @return row
+     */
+    public static String calculateSegmentStatistics(Segment segment) {
+        StringBuilder row = new StringBuilder();
+        List<Batch> batches = segment.getBatches();
+
+        if (segment.getBatchedTraces() == null && segment.getNonBatchedTraces() == null) {
+            segment.partitionTraces();
+        }
+        //for calculating intra-batch measures, merged from the statistics of the individual batches
+        RunningStatistics intraBatchInterArrivalTimes = new RunningStatistics();
+        for (int j = 0; j < batches.size(); j++) {
+            intraBatchInterArrivalTimes.merge(batches.get(j).getInterArrivalStatistics());
+        }
+
+        row.append(segment.getName() + "," + segment.getTotalNrTraces() + "," + segment.getBatchPercentage() + "," + segment.getBatches().size() + ",");
+        if (batches.size() > 0) {
+            row.append(formatMeanAndStandardDeviation(segment.getBatchSizes()) + ",");
+        } else {
+            row.append("-,-,");
+        }
+        if (segment.getBatchIntervals() == null) {
+            row.append("-,-,");
+        } else {
+            row.append(formatMeanAndStandardDeviation(segment.getBatchIntervals()) + ",");
+        }
+        row.append(formatMeanAndStandardDeviation(segment.getAllCaseInterArrivalTimes()) + ",");
+        if (batches.size() > 0) {
+            row.append(formatMeanAndStandardDeviation(segment.getBatchedCaseInterArrivalTimes()) + ",");
+        } else {
+            row.append("-,-,");
+        }
+        if (batches.size() == 0 || segment.getBatchedTraces().size() < segment.getTraces().size()) {
+            row.append(formatMeanAndStandardDeviation(segment.getNonBatchedCaseInterArrivalTimes()) + ",");
+        } else {
+            row.append("-,-,");
+        }
+        if (batches.size() > 0) {
+            row.append(intraBatchInterArrivalTimes.getMean() + "," + intraBatchInterArrivalTimes.getStandardDeviation() + ",");
+        } else {
+            row.append("-,-,");
+        }
+        if (batches.size() > 0) {
+            row.append(formatMeanAndStandardDeviation(segment.getBatchedCaseWaitingTimes()) + ",");
+        } else {
+            row.append("-,-,");
+        }
+        if (batches.size() == 0 || segment.getBatchedTraces().size() < segment.getTraces().size()) {
+            row.append(formatMeanAndStandardDeviation(segment.getNonBatchedCaseWaitingTimes()) + ",");
+        } else {
+            row.append("-,-,");
+        }
+        row.append(formatPercentiles(segment.getBatchedCaseWaitingTimeSketch()) + ",");
+        row.append(formatPercentiles(segment.getNonBatchedCaseWaitingTimeSketch()));
+        return row.toString();
+    }
+
+    /**
+     * Calculates statistics for each batch and prints these to the console
+     *
+     * @param segments
+     * @throws Exception
+     */
+    public static void calculateAndPrintBatchStatistics(List<Segment> segments, String outputDirectory) throws Exception {
+        String pathName = outputDirectory + "\\Statistics\\" + BATCH_STATISTICS;
+        FileWriter fw = new FileWriter(pathName);
+        fw.write(TABLE_HEADERS.get(BATCH_STATISTICS));
+        fw.write("\n");
+        for (int i = 0; i < segments.size(); i++) {
+            List<String> rows = calculateBatchStatistics(segments.get(i));
+            for (int j = 0; j < rows.size(); j++) {
+                fw.write(rows.get(j));
+                fw.write("\n");
             }
-            //for calculating intra-batch measures
-            double[][] intraBatchInterArrivalTimesM = new double[batches.size()][];
+        }
+        fw.flush();
+        fw.close();
+    }
+
+    /**
+     * Calculates the statistics of all batches of a segment as rows of batch_statistics.csv
+     *
+     * @param segment
+     * @return rows
+     */
+    public static List<String> calculateBatchStatistics(Segment segment) {
+        List<String> rows = new ArrayList<>();
+        List<Batch> batches = segment.getBatches();
+        if (batches.size() > 0) {
+            //calculate statistics for all batches of the segment in parallel
+            ForkJoinPool.commonPool().invoke(new BatchStatisticsTask(batches, 0, batches.size()));
             for (int j = 0; j < batches.size(); j++) {
-                Batch batch = batches.get(j); //get batch
-                intraBatchInterArrivalTimesM[j] = batch.getInterArrivalTimes();
+                rows.add(formatBatchStatistics(segment.getName(), j + 1, batches.get(j)));
             }
-            double[] intraBatchInterArrivalTimes = convertToArray(intraBatchInterArrivalTimesM);
+        }
+        return rows;
+    }
 
-            fw.write(segment.getName() + "," + segment.getTotalNrTraces() + "," + segment.getBatchPercentage() + "," + segment.getBatches().size() + ",");
-            if (batches.size() > 0) {
-                fw.write(calculateMean(segment.getBatchSizes()) + "," + calculateStandardDeviation(segment.getBatchSizes()) + ",");
-            } else {
-                fw.write("-,-,");
+    /**
+     * Formats the statistics of the i-th batch of a segment as a row of batch_statistics.csv
+     *
+     * @param segmentName
+     * @param i
+     * @param batch
+     * @return row
+     */
+    public static String formatBatchStatistics(String segmentName, int i, Batch batch) {
+        return segmentName + "," + i + "," + batch.getSize() + "," + formatDate(batch.getEndWait()) + "," + batch.getMeanInterArrivalTime() + "," + batch.getSdInterArrivalTime() + "," + batch.getMeanWaitingTime() + "," + batch.getSdWaitingTime() + "," + batch.getMinWaitingTime() + "," + batch.getMaxWaitingTime() + "," + batch.getP50WaitingTime() + "," + batch.getP90WaitingTime() + "," + batch.getP99WaitingTime();
+    }
+
+    /**
+     * Calculates a waiting time histogram (roughly doubling bin widths, in hours) of the batched and non-batched cases
+     * of a segment as rows of waiting_time_histograms.csv
+     *
+     * @param segment
+     * @return rows
+     */
+    public static List<String> calculateWaitingTimeHistograms(Segment segment) {
+        List<String> rows = new ArrayList<>();
+        List<double[]> batched = segment.getBatchedCaseWaitingTimeSketch().getHistogram(QuantileSketch.BUCKETS_PER_DOUBLING);
+        for (int j = 0; j < batched.size(); j++) {
+            rows.add(segment.getName() + ",batch," + batched.get(j)[0] + "," + batched.get(j)[1] + "," + (long) batched.get(j)[2]);
+        }
+        List<double[]> nonBatched = segment.getNonBatchedCaseWaitingTimeSketch().getHistogram(QuantileSketch.BUCKETS_PER_DOUBLING);
+        for (int j = 0; j < nonBatched.size(); j++) {
+            rows.add(segment.getName() + ",no batch," + nonBatched.get(j)[0] + "," + nonBatched.get(j)[1] + "," + (long) nonBatched.get(j)[2]);
+        }
+        return rows;
+    }
+
+    /**
+     * Checks that a load profile bucket width is a positive number of whole minutes, the resolution of the bucket
+     * labels; narrower buckets would get the same label
+     *
+     * @param bucketWidth in milliseconds
+     */
+    public static void checkBucketWidth(long bucketWidth) {
+        if (bucketWidth < MINUTE || bucketWidth % MINUTE != 0) {
+            throw new IllegalArgumentException("Bucket width must be a positive multiple of " + MINUTE + " ms, not " + bucketWidth);
+        }
+    }
+
+    /**
+     * Calculates the load of a segment per time bucket: the cases entering, waiting (entered but not yet released at
+     * the end of the bucket) and released, and the batches departing. Called while mining, it reuses the orders the
+     * batching already sorted: the start times, and the traces by (rounded) end time with their batches. Only ends
+     * within a run of equal (rounded) end times, at most half a day apart, can be out of order; they are counted in a
+     * small difference array per run. A single sweep then merges entries, releases and departures in O(n + rows),
+     * in memory independent of the time span. Each bucket with an event is a row; each run of buckets without events
+     * in which cases are waiting is a single row from its first bucket up to the next event.
+     *
+     * @param name
+     * @param starts start times of the traces, sorted
+     * @param traces sorted by (rounded) end time, as batched
+     * @param batches in the order of the traces
+     * @param rounded whether the traces are sorted by rounded end time (non-FIFO)
+     * @param bucketWidth in milliseconds, buckets are aligned to multiples of it since the epoch
+     * @return rows of load_profile.csv
+     */
+    public static List<String> calculateLoadProfile(String name, long[] starts, List<Trace> traces, List<Batch> batches, boolean rounded, long bucketWidth) {
+        checkBucketWidth(bucketWidth);
+        // releases and departures per bucket, in ascending bucket order
+        long[] releaseBuckets = new long[traces.size()];
+        int[] released = new int[traces.size()];
+        int[] departures = new int[traces.size()];
+        int nrReleaseBuckets = 0;
+        int b = 0;
+        int runStart = 0;
+        while (runStart < traces.size()) {
+            long end = rounded ? traces.get(runStart).getEndRounded() : traces.get(runStart).getEnd();
+            long firstBucket = Math.floorDiv(traces.get(runStart).getEnd(), bucketWidth);
+            long lastBucket = firstBucket;
+            int runEnd = runStart + 1;
+            while (runEnd < traces.size() && (rounded ? traces.get(runEnd).getEndRounded() : traces.get(runEnd).getEnd()) == end) {
+                long bucket = Math.floorDiv(traces.get(runEnd).getEnd(), bucketWidth);
+                firstBucket = Math.min(firstBucket, bucket);
+                lastBucket = Math.max(lastBucket, bucket);
+                runEnd++;
             }
-            if (segment.getBatchIntervals() == null) {
-                fw.write("-,-,");
-            } else {
-                fw.write(calculateMean(segment.getBatchIntervals()) + "," + calculateStandardDeviation(segment.getBatchIntervals()) + ",");
+            int[] runReleased = new int[(int) (lastBucket - firstBucket + 1)];
+            int[] runDepartures = new int[runReleased.length];
+            for (int i = runStart; i < runEnd; i++) {
+                runReleased[(int) (Math.floorDiv(traces.get(i).getEnd(), bucketWidth) - firstBucket)]++;
             }
-            fw.write(calculateMean(segment.getAllCaseInterArrivalTimes()) + "," + calculateStandardDeviation(segment.getAllCaseInterArrivalTimes()) + ",");
-            if (batches.size() > 0) {
-                fw.write(calculateMean(segment.getBatchedCaseInterArrivalTimes()) + "," + calculateStandardDeviation(segment.getBatchedCaseInterArrivalTimes()) + ",");
-            } else {
-                fw.write("-,-,");
+            // a batch lies within a run and departs at the latest end of its traces
+            while (b < batches.size() && batches.get(b).offset < runEnd) {
+                runDepartures[(int) (Math.floorDiv(batches.get(b).getEndWait(), bucketWidth) - firstBucket)]++;
+                b++;
             }
-            if (batches.size() == 0 || segment.getBatchedTraces().size() < segment.getTraces().size()) {
-                fw.write(calculateMean(segment.getNonBatchedCaseInterArrivalTimes()) + "," + calculateStandardDeviation(segment.getNonBatchedCaseInterArrivalTimes()) + ",");
-            } else {
-                fw.write("-,-,");
+            for (int i = 0; i < runReleased.length; i++) {
+                if (runReleased[i] == 0 && runDepartures[i] == 0) {
+                    continue;
+                }
+                // consecutive runs can end in the same bucket
+                if (nrReleaseBuckets == 0 || releaseBuckets[nrReleaseBuckets - 1] != firstBucket + i) {
+                    releaseBuckets[nrReleaseBuckets++] = firstBucket + i;
+                }
+                released[nrReleaseBuckets - 1] += runReleased[i];
+                departures[nrReleaseBuckets - 1] += runDepartures[i];
             }
-            if (batches.size() > 0) {
-                fw.write(calculateMean(intraBatchInterArrivalTimes) + "," + calculateStandardDeviation(intraBatchInterArrivalTimes) + ",");
-            } else {
-                fw.write("-,-,");
+            runStart = runEnd;
+        }
+
+        List<String> rows = new ArrayList<>();
+        int s = 0;
+        int r = 0;
+        long waiting = 0;
+        long previousBucket = 0;
+        while (s < starts.length || r < nrReleaseBuckets) {
+            long bucket = Long.MAX_VALUE;
+            if (s < starts.length) {
+                bucket = Math.floorDiv(starts[s], bucketWidth);
             }
-            if (batches.size() > 0) {
-                fw.write(calculateMean(segment.getBatchedCaseWaitingTimes()) + "," + calculateStandardDeviation(segment.getBatchedCaseWaitingTimes()) + ",");
-            } else {
-                fw.write("-,-,");
+            if (r < nrReleaseBuckets) {
+                bucket = Math.min(bucket, releaseBuckets[r]);
             }
-            if (batches.size() == 0 || segment.getBatchedTraces().size() < segment.getTraces().size()) {
-                fw.write(calculateMean(segment.getNonBatchedCaseWaitingTimes()) + "," + calculateStandardDeviation(segment.getNonBatchedCaseWaitingTimes()));
-            } else {
-                fw.write("-,-");
+            if (waiting > 0 && bucket > previousBucket + 1) {
+                rows.add(name + "," + formatDate((previousBucket + 1) * bucketWidth) + "," + formatDate(bucket * bucketWidth) + ",0," + waiting + ",0,0");
             }
-            fw.write("\n");
+            int nrEntering = 0;
+            while (s < starts.length && Math.floorDiv(starts[s], bucketWidth) == bucket) {
+                nrEntering++;
+                s++;
+            }
+            int nrReleased = 0;
+            int nrDepartures = 0;
+            if (r < nrReleaseBuckets && releaseBuckets[r] == bucket) {
+                nrReleased = released[r];
+                nrDepartures = departures[r];
+                r++;
+            }
+            waiting += nrEntering - nrReleased;
+            rows.add(name + "," + formatDate(bucket * bucketWidth) + "," + formatDate((bucket + 1) * bucketWidth) + "," + nrEntering + "," + waiting + "," + nrReleased + "," + nrDepartures);
+            previousBucket = bucket;
         }
-        fw.flush();
-        fw.close();
+        return rows;
     }
 
     /**
-     * Calculates statistics for each batch and prints these to the console
+     * Calculates all statistics tables rows of a mined segment
      *
-     * @param segments
+     * @param segment
+     * @return result
+     */
+    public static SegmentResult calculateStatistics(Segment segment) {
+        SegmentResult result = new SegmentResult(segment.getName());
+        result.addRow(SEGMENT_STATISTICS, calculateSegmentStatistics(segment));
+        result.addRows(BATCH_STATISTICS, calculateBatchStatistics(segment));
+        result.addRows(WAITING_TIME_HISTOGRAMS, calculateWaitingTimeHistograms(segment));
+        result.addRows(LOAD_PROFILE, segment.getLoadProfile());
+        return result;
+    }
+
+    /**
+     * Prints the rows of all segment results to the statistics tables, in the order of the results
+     *
+     * @param results
+     * @param outputDirectory
      * @throws Exception
      */
-    public static void calculateAndPrintBatchStatistics(List<Segment> segments, String outputDirectory) throws Exception {
-        String pathName = outputDirectory + "\\Statistics\\batch_statistics.csv";
-        FileWriter fw = new FileWriter(pathName);
-        fw.write("segmentKey,i,k_i,t_{bi_dep},mu_{IBIA_i},sigma{IBIA_i},mu_{Wo_bi},sigma{Wo_bi},W_{i_min},W{i_max}");
-        fw.write("\n");
-        for (int i = 0; i < segments.size(); i++) {
-            Segment segment = segments.get(i);
-            List<Batch> batches = segment.getBatches();
-            if (batches.size() > 0) {
-                for (int j = 0; j < batches.size(); j++) {
-                    Batch batch = batches.get(j); //get batch
-                    //calculate statistics
-                    batch.setMeanInterArrivalTime(calculateMean(batch.getInterArrivalTimes()));
-                    batch.setSdInterArrivalTime(calculateStandardDeviation(batch.getInterArrivalTimes()));
-                    batch.setMeanWaitingTime(calculateMean(batch.getWaitingTimes()));
-                    batch.setSdWaitingTime(calculateStandardDeviation(batch.getWaitingTimes()));
-                    //write to line in CSV
-                    fw.write(segment.getName() + "," + (j + 1) + "," + batch.getSize() + "," + formatDate(batch.getEndWait()) + "," + batch.getMeanInterArrivalTime() + "," + batch.getSdInterArrivalTime() + "," + batch.getMeanWaitingTime() + "," + batch.getSdWaitingTime() + "," + batch.getMinWaitingTime() + "," + batch.getMaxWaitingTime());
+    public static void printStatistics(List<SegmentResult> results, String outputDirectory) throws Exception {
+        for (Map.Entry<String, String> table : TABLE_HEADERS.entrySet()) {
+            String pathName = outputDirectory + "\\Statistics\\" + table.getKey();
+            FileWriter fw = new FileWriter(pathName);
+            fw.write(table.getValue());
+            fw.write("\n");
+            for (int i = 0; i < results.size(); i++) {
+                List<String> rows = results.get(i).getRows(table.getKey());
+                for (int j = 0; j < rows.size(); j++) {
+                    fw.write(rows.get(j));
                     fw.write("\n");
                 }
             }
+            fw.flush();
+            fw.close();
         }
-        fw.flush();
-        fw.close();
     }
 
     /**
@@ -452,24 +699,10 @@ public class BatchMiner {
      * @throws Exception
      */
     public static void segmentToCSVlog(List<Trace> traces, String name, String outputDirectory) throws Exception {
-        // This part changes all "/" to "_" in activity names to make them usable as filenames
-        int index = name.indexOf("/");
-        while (index >= 0) {
-            name = name.substring(0, index) + '_' + name.substring(index + 1);
-            index = name.indexOf("/");
-        }
-        // This part of for BPI19 log, to delete ":" specifically following "SRM", to make sure the colon between activity names is preserved
-        index = name.indexOf("SRM:");
-        while (index >= 0) {
-            name = name.substring(0, index + 3) + name.substring(index + 4);
-            index = name.indexOf("SRM:");
-        }
-        // This part splits segment name of 2 activities in two separate activity names
-        index = name.indexOf(":");
-        String startEvent = name.substring(0, index);
-        String endEvent = name.substring(index + 1);
-        // Change to specify filename and path to save batch/non-batch event logs:
-        String pathName = outputDirectory + "\\Logs\\segment_" + startEvent + "_" + endEvent + ".csv";
+        String[] events = splitSegmentName(name);
+        String startEvent = events[0];
+        String endEvent = events[1];
+        String pathName = getLogPathName(name, outputDirectory);
 
         FileWriter fw = new FileWriter(pathName);
         fw.write("CaseID,eventName,timestamp");
@@ -496,6 +729,165 @@ public class BatchMiner {
         fw.close();
     }
 
+    /**
+     * Splits a segment name into its start and end activity, made usable as filenames
+     *
+     * @param name
+     * @return events
+     */
+    public static String[] splitSegmentName(String name) {
+        // This part changes all "/" to "_" in activity names to make them usable as filenames
+        int index = name.indexOf("/");
+        while (index >= 0) {
+            name = name.substring(0, index) + '_' + name.substring(index + 1);
+            index = name.indexOf("/");
+        }
+        // This part of for BPI19 log, to delete ":" specifically following "SRM", to make sure the colon between activity names is preserved
+        index = name.indexOf("SRM:");
+        while (index >= 0) {
+            name = name.substring(0, index + 3) + name.substring(index + 4);
+            index = name.indexOf("SRM:");
+        }
+        // This part splits segment name of 2 activities in two separate activity names
+        index = name.indexOf(":");
+        String startEvent = name.substring(0, index);
+        String endEvent = name.substring(index + 1);
+        return new String[]{startEvent, endEvent};
+    }
+
+    /**
+     * Returns the path of the annotated log of a segment
+     *
+     * @param name
+     * @param outputDirectory
+     * @return pathName
+     */
+    public static String getLogPathName(String name, String outputDirectory) {
+        String[] events = splitSegmentName(name);
+        // Change to specify filename and path to save batch/non-batch event logs:
+        return outputDirectory + "\\Logs\\segment_" + events[0] + "_" + events[1] + ".csv";
+    }
+
+    /**
+     * Mines the segments at the given positions of the segment list, skipping segments completed in the checkpoint
+     * and serving unchanged segments from the cache (if any). Every completed segment is committed to the checkpoint.
+     *
+     * @param segmentFiles input files by segment, see listSegmentFiles
+     * @param allSegments
+     * @param indices
+     * @param minBatchSize
+     * @param nonFIFO
+     * @param bucketWidth of the load profile, in milliseconds
+     * @param outputDirectory
+     * @param cache
+     * @param checkpoint
+     * @param observer receives every segment mined in this run, e.g. for analyses across segments (may be null)
+     * @param scheduler mines segments concurrently within a memory budget (null to mine them one at a time, in order)
+     * @param timer accumulates the time per stage of processSegment (may be null)
+     * @return results by position in the segment list, in the order of indices
+     * @throws Exception
+     */
+    public static Map<Integer, SegmentResult> mineSegments(Map<String, List<Path>> segmentFiles, List<String> allSegments, List<Integer> indices, int minBatchSize, String nonFIFO, long bucketWidth, String outputDirectory, ResultCache cache, Checkpoint checkpoint, Consumer<Segment> observer, SegmentScheduler scheduler, StageTimer timer) throws Exception {
+        SegmentJob job = i -> {
+            String name = allSegments.get(i);
+            System.out.println(name.toUpperCase());
+            List<Path> files = segmentFiles.getOrDefault(name, new ArrayList<>());
+            String fingerprint = Checkpoint.fingerprint(files);
+            SegmentResult completed = checkpoint.load(i, name, TABLE_HEADERS.keySet(), getLogPathName(name, outputDirectory), fingerprint);
+            if (completed != null) {
+                System.out.println("\t" + name + ": Completed in earlier run...");
+                return completed;
+            }
+            SegmentResult result = processSegment(files, name, minBatchSize, nonFIFO, bucketWidth, outputDirectory, cache, observer, timer);
+            if (result != null) {
+                checkpoint.commit(i, result, TABLE_HEADERS.keySet(), getLogPathName(name, outputDirectory), fingerprint);
+            }
+            return result;
+        };
+        if (scheduler != null) {
+            return scheduler.run(allSegments, indices, job);
+        }
+        Map<Integer, SegmentResult> results = new LinkedHashMap<>();
+        for (int i : indices) {
+            SegmentResult result = job.process(i);
+            if (result != null) {
+                results.put(i, result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Reads, mines and prints the annotated log of a single segment and calculates its statistics, or restores them
+     * from the cache if its input files and the parameters did not change
+     *
+     * @param files input files of the segment
+     * @param name
+     * @param minBatchSize
+     * @param nonFIFO
+     * @param bucketWidth of the load profile, in milliseconds
+     * @param outputDirectory
+     * @param cache null to always mine
+     * @param observer receives the mined segment (may be null)
+     * @param timer accumulates the time per stage (may be null)
+     * @return result, or null if the segment has no observations
+     * @throws Exception
+     */
+    public static SegmentResult processSegment(List<Path> files, String name, int minBatchSize, String nonFIFO, long bucketWidth, String outputDirectory, ResultCache cache, Consumer<Segment> observer, StageTimer timer) throws Exception {
+        if (timer == null) {
+            timer = new StageTimer(); //discarded
+        }
+        long stageStart = System.nanoTime();
+        String key = null;
+        if (cache != null) {
+            key = ResultCache.computeKey(name, files, minBatchSize, nonFIFO, bucketWidth);
+            SegmentResult cached = cache.load(key, name, TABLE_HEADERS.keySet());
+            if (cached != null) {
+                System.out.println("\t" + name + ": Using cached results...");
+                cache.restoreOutputs(key, getLogPathName(name, outputDirectory), BatchIntervalIndex.getIndexPathName(name, outputDirectory));
+                timer.stop(StageTimer.CACHE, stageStart);
+                return cached;
+            }
+        }
+        stageStart = timer.stop(StageTimer.CACHE, stageStart);
+        System.out.println("\t" + name + ": Listing observations...");
+        //Read all CSV files and filter to list
+        List<Trace> allTraces = filterSegments(files, name);
+//        allTraces = filterTimeFrame(allTraces, segmentStart, segmentEnd);
+        stageStart = timer.stop(StageTimer.INGEST, stageStart);
+
+        if (allTraces.isEmpty()) {
+            System.out.println("Segment " + name + " is not contained in time frame or cannot be found.");
+            return null;
+        }
+        timer.addRows(allTraces.size());
+        // Uncomment to filter based on time frame (example below for period 01-01-2003 - 31-12-2005:
+//        long segmentStart = 1041379200000L;        long segmentEnd = 1135987200000L;
+//        filterTimeFrame(allTraces, segmentStart, segmentEnd);
+
+        System.out.println("\t" + name + ": Sorting observations and detecting batches...");
+        Segment segment = mineSegment(name, allTraces, minBatchSize, nonFIFO, bucketWidth);
+        stageStart = timer.stop(StageTimer.DETECT, stageStart);
+        // Uncomment below to print each segment to CSV separately:
+        System.out.println("\t" + name + ": Printing annotated log to CSV...");
+        segmentToCSVlog(segment.getTraces(), segment.getName(), outputDirectory);
+        System.out.println("\t" + name + ": Indexing batch intervals...");
+        BatchIntervalIndex.build(segment).write(BatchIntervalIndex.getIndexPathName(name, outputDirectory));
+        stageStart = timer.stop(StageTimer.OUTPUT, stageStart);
+        System.out.println("\t" + name + ": Calculating statistics...");
+        SegmentResult result = calculateStatistics(segment);
+        timer.stop(StageTimer.STATISTICS, stageStart);
+        if (observer != null) {
+            observer.accept(segment);
+        }
+        if (key != null) {
+            stageStart = System.nanoTime();
+            cache.store(key, result, TABLE_HEADERS.keySet(), getLogPathName(name, outputDirectory), BatchIntervalIndex.getIndexPathName(name, outputDirectory));
+            timer.stop(StageTimer.CACHE, stageStart);
+        }
+        return result;
+    }
+
     public static String getCurrentExecutionTimeString(long startTime) {
         final long executionTime = System.currentTimeMillis() - startTime;
         String executionTimeString = String.format("%d min, %d sec",
@@ -529,60 +921,98 @@ public class BatchMiner {
         //Specify directory path to store logs and statistics (directory must contain two folders called "Statistics" and "Logs"):
         String outputDirectory = "C:\\Users\\s111402\\OneDrive - TU Eindhoven\\perf_mining_batch_processing\\output_test";
 
-        List<String> allSegments = listSegments(inputDirectory);
+        //Specify to reuse the cached results of segments whose input files and parameters did not change y/n:
+        String useCache = "y";
+
+        //Specify to track how batches propagate to adjacent segments y/n:
+        String trackPropagation = "n";
+
+        //Specify width of the time buckets of the load profile in milliseconds:
+        long bucketWidth = DEFAULT_BUCKET_WIDTH;
+
+        //Specify to test the significance of the batches with random permutations y/n, the number of permutations and the random seed:
+        String testSignificance = "n";
+        int nrPermutations = 1000;
+        long seed = 1;
+
+        //Specify to calculate per case in how many segments it was batched and how long it waited in batches y/n:
+        String calculateCaseStatistics = "n";
+
+        //Specify memory budget in MB for the segments mined at the same time (0 to mine one segment at a time):
+        long memoryBudgetMB = Runtime.getRuntime().maxMemory() / 2 / (1 << 20);
+
+        checkBucketWidth(bucketWidth);
+
         System.out.println("Listing segments...");
+        //The input directory is walked once; every segment is read from the files found here, and its footprint is
+        //estimated from their sizes
+        Map<String, List<Path>> segmentFiles = listSegmentFiles(inputDirectory);
+        List<String> allSegments = new ArrayList<>(segmentFiles.keySet());
+        Map<String, Long> footprints = SegmentScheduler.estimateFootprints(segmentFiles);
+        SegmentScheduler scheduler = null;
+        if (memoryBudgetMB > 0) {
+            scheduler = new SegmentScheduler(memoryBudgetMB << 20, Runtime.getRuntime().availableProcessors(), footprints);
+        }
+
+        //Analyses across segments need the batches of all segments, so every segment must be mined in this run
+        Consumer<Segment> observer = null;
+        //One dictionary of case identifiers is shared by the analyses that follow cases over segments
+        CaseDictionary cases = new CaseDictionary();
+        BatchPropagation propagation = null;
+        if (trackPropagation.equals("y")) {
+            propagation = new BatchPropagation(cases);
+            observer = propagation::addSegment;
+        }
+        BatchSignificance significance = null;
+        if (testSignificance.equals("y")) {
+            significance = new BatchSignificance(minBatchSize, nonFIFO, nrPermutations, seed);
+            observer = observer == null ? significance::addSegment : observer.andThen(significance::addSegment);
+        }
+        CaseStatistics caseStatistics = null;
+        if (calculateCaseStatistics.equals("y")) {
+            caseStatistics = new CaseStatistics(cases);
+            observer = observer == null ? caseStatistics::addSegment : observer.andThen(caseStatistics::addSegment);
+        }
 
-        //Create list for segments
-        List<Segment> segments = new ArrayList<>();
+        ResultCache cache = null;
+        if (useCache.equals("y") && observer == null) {
+            cache = new ResultCache(outputDirectory);
+        }
+        String parameters = inputDirectory + "," + minBatchSize + "," + nonFIFO + "," + bucketWidth + "," + ResultCache.CACHE_VERSION;
+        if (observer != null) {
+            // discard any checkpoint, segments completed in an earlier run would be missing from the analyses
+            new Checkpoint(outputDirectory, parameters).delete();
+        }
+        //Segments completed by an earlier, interrupted run with the same parameters are not mined again
+        Checkpoint checkpoint = new Checkpoint(outputDirectory, parameters);
+        if (checkpoint.getNrCompleted() > 0) {
+            System.out.println("Resuming run, " + checkpoint.getNrCompleted() + " segments completed...");
+        }
 
+        List<Integer> indices = new ArrayList<>();
         for (int i = 0; i < allSegments.size(); i++) {
-            System.out.println(allSegments.get(i).toUpperCase());
-            System.out.println("\tListing observations...");
-            //Read all CSV files and filter to list
-            List<Trace> allTraces = filterSegments(inputDirectory, allSegments.get(i));
-//            allTraces = filterTimeFrame(allTraces, segmentStart, segmentEnd);
-
-            if (allTraces.isEmpty()) {
-                System.out.println("Segment " + allSegments.get(i) + " is not contained in time frame or cannot be found.");
-            } else {
-                // Uncomment to filter based on time frame (example below for period 01-01-2003 - 31-12-2005:
-//                long segmentStart = 1041379200000L;        long segmentEnd = 1135987200000L;
-//                filterTimeFrame(allTraces, segmentStart, segmentEnd);
-
-                //Sort list first on trace start times (for non-batch statistics)
-                allTraces.sort(Comparator.comparing(Trace::getStart));
-                double[] allCaseInterArrivalTimes = calculateAllCaseInterArrivalTimes(allTraces);
-
-                List<Batch> batches;
-
-                // Different procedure for BPI17, using non-FIFO 12h time-window for batching
-//                if (log.equals("BPI2017") || log.equals("BPI2012")) {
-                if (nonFIFO.equals("y")) {
-                    //Sort list of trace information first by end time, then by start time (for the actual batching)
-                    System.out.println("\tSorting observations...");
-                    allTraces.sort(Comparator.comparing(Trace::getEndRounded).thenComparing(Trace::getStart));
-                    //List all batches based on algorithm
-                    System.out.println("\tDetecting batches...");
-                    batches = listBatchesRounded(allTraces, minBatchSize);
-                } else {
-                    System.out.println("\tSorting observations...");
-                    allTraces.sort(Comparator.comparing(Trace::getEnd).thenComparing(Trace::getStart));
-                    System.out.println("\tDetecting batches...");
-                    batches = listBatches(allTraces, minBatchSize);
-                }
+            indices.add(i);
+        }
+        //Create list for the statistics of all segments
+        List<SegmentResult> results = new ArrayList<>(mineSegments(segmentFiles, allSegments, indices, minBatchSize, nonFIFO, bucketWidth, outputDirectory, cache, checkpoint, observer, scheduler, null).values());
 
-                //Create segment object based on traces and batches and add to list of segments
-                Segment segment = new Segment(allSegments.get(i), allTraces, batches, allCaseInterArrivalTimes);
-                segments.add(segment);
-                // Uncomment below to print each segment to CSV separately:
-                System.out.println("\tPrinting annotated log to CSV...");
-                segmentToCSVlog(segment.getTraces(), segment.getName(), outputDirectory);
-            }
+        System.out.println("Printing segment, batch and waiting time statistics...");
+        printStatistics(results, outputDirectory);
+        if (propagation != null) {
+            System.out.println("Printing batch propagation...");
+            propagation.orderSegments(allSegments);
+            propagation.printPropagation(outputDirectory);
+        }
+        if (significance != null) {
+            System.out.println("Printing batch significance...");
+            significance.orderSegments(allSegments);
+            significance.printSignificance(outputDirectory);
+        }
+        if (caseStatistics != null) {
+            System.out.println("Printing case statistics...");
+            caseStatistics.printCaseStatistics(outputDirectory);
         }
-        System.out.println("Calculating and printing segment statistics...");
-        calculateAndPrintSegmentStatistics(segments, outputDirectory, startTime);
-        System.out.println("Calculating and printing batch statistics...");
-        calculateAndPrintBatchStatistics(segments, outputDirectory);
+        checkpoint.delete();
 
         final long executionTime = System.currentTimeMillis() - startTime;
         String executionTimeString = String.format("%d min, %d sec",
@@ -0,0 +1,194 @@
+import java.io.FileWriter;
+import java.util.*;
+
+public class BatchPropagation {
+    // global dictionary of case identifiers over all segments
+    public CaseDictionary cases;
+    public Map<String, SegmentBatches> segments;
+    public BatchPropagation(CaseDictionary cases) {
+        this.cases = cases;
+        this.segments = new LinkedHashMap<>();
+    }
+
+    /**
+     * Adds the batches of a mined segment to the index: case identifiers are replaced by their global index, and every
+     * batch is reduced to its sorted case set and a signature of that set. Segments can be added concurrently.
+     *
+     * @param segment
+     */
+    public void addSegment(Segment segment) {
+        synchronized (this) {
+            if (segments.containsKey(segment.getName())) {
+                return;
+            }
+        }
+        SegmentBatches entry = new SegmentBatches();
+        entry.name = segment.getName();
+        String[] events = BatchMiner.splitSegmentName(segment.getName());
+        entry.startEvent = events[0];
+        entry.endEvent = events[1];
+
+        List<Trace> traces = segment.getTraces();
+        entry.cases = new int[traces.size()];
+        for (int i = 0; i < traces.size(); i++) {
+            entry.cases[i] = cases.getIndex(traces.get(i).getCaseID());
+        }
+        Arrays.sort(entry.cases);
+
+        List<Batch> batches = segment.getBatches();
+        entry.caseSets = new int[batches.size()][];
+        entry.signatures = new long[batches.size()];
+        int nrBatchedCases = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            nrBatchedCases += batches.get(i).getSize();
+        }
+        entry.batchOfCase = new long[nrBatchedCases];
+        int k = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            List<Trace> tracesInBatch = batches.get(i).getTraces();
+            int[] caseSet = new int[tracesInBatch.size()];
+            for (int j = 0; j < caseSet.length; j++) {
+                caseSet[j] = cases.getIndex(tracesInBatch.get(j).getCaseID());
+                entry.batchOfCase[k++] = ((long) caseSet[j] << 32) | i;
+            }
+            Arrays.sort(caseSet);
+            entry.caseSets[i] = caseSet;
+            entry.signatures[i] = signature(caseSet);
+        }
+        Arrays.sort(entry.batchOfCase);
+        synchronized (this) {
+            segments.put(entry.name, entry);
+        }
+    }
+
+    /**
+     * Orders the segments as in the segment list, so the analysis does not depend on the order they were mined in
+     *
+     * @param allSegments
+     */
+    public synchronized void orderSegments(List<String> allSegments) {
+        Map<String, SegmentBatches> ordered = new LinkedHashMap<>();
+        for (String name : allSegments) {
+            if (segments.containsKey(name)) {
+                ordered.put(name, segments.get(name));
+            }
+        }
+        segments = ordered;
+    }
+
+    /**
+     * Hashes a sorted case set; equal sets have equal signatures, so identical batches are recognized without
+     * comparing their cases
+     *
+     * @param caseSet
+     * @return signature
+     */
+    public static long signature(int[] caseSet) {
+        long hash = caseSet.length;
+        for (int i = 0; i < caseSet.length; i++) {
+            hash = (hash ^ caseSet[i]) * 0x9E3779B97F4A7C15L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the batch of a case in a segment, or -1 if the case is not batched there
+     *
+     * @param entry
+     * @param caseIndex
+     * @return batch number
+     */
+    public static int getBatch(SegmentBatches entry, int caseIndex) {
+        long key = (long) caseIndex << 32;
+        int position = Arrays.binarySearch(entry.batchOfCase, key);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        if (position < entry.batchOfCase.length && (entry.batchOfCase[position] >>> 32) == caseIndex) {
+            return (int) entry.batchOfCase[position];
+        }
+        return -1;
+    }
+
+    /**
+     * Follows every batch of every segment A:B into every adjacent segment B:C and classifies what happens to its
+     * cases there: they stay together in exactly the same batch (continued), join a larger batch (merged), spread
+     * over several batches or partly leave batching (split) or are not batched at all (dissolved). Adjacent segments
+     * that none of its cases reach are not reported. Every case is looked up once per adjacent segment, so the analysis is linear in the
+     * number of batched cases.
+     *
+     * @return rows of batch_propagation.csv
+     */
+    public synchronized List<String> analyze() {
+        Map<String, List<SegmentBatches>> segmentsByStartEvent = new HashMap<>();
+        for (SegmentBatches entry : segments.values()) {
+            segmentsByStartEvent.computeIfAbsent(entry.startEvent, e -> new ArrayList<>()).add(entry);
+        }
+        List<String> rows = new ArrayList<>();
+        Map<Integer, Integer> fragments = new HashMap<>();
+        for (SegmentBatches upstream : segments.values()) {
+            List<SegmentBatches> nextSegments = segmentsByStartEvent.getOrDefault(upstream.endEvent, Collections.emptyList());
+            for (int i = 0; i < upstream.caseSets.length; i++) {
+                int[] caseSet = upstream.caseSets[i];
+                for (SegmentBatches downstream : nextSegments) {
+                    fragments.clear();
+                    int reached = 0;
+                    int inBatches = 0;
+                    for (int c = 0; c < caseSet.length; c++) {
+                        if (Arrays.binarySearch(downstream.cases, caseSet[c]) < 0) {
+                            continue;
+                        }
+                        reached++;
+                        int batch = getBatch(downstream, caseSet[c]);
+                        if (batch >= 0) {
+                            inBatches++;
+                            fragments.merge(batch, 1, Integer::sum);
+                        }
+                    }
+                    int largestBatch = -1;
+                    int largestFragment = 0;
+                    for (Map.Entry<Integer, Integer> fragment : fragments.entrySet()) {
+                        if (fragment.getValue() > largestFragment || (fragment.getValue() == largestFragment && fragment.getKey() < largestBatch)) {
+                            largestFragment = fragment.getValue();
+                            largestBatch = fragment.getKey();
+                        }
+                    }
+                    if (reached == 0) {
+                        continue;
+                    }
+                    String outcome;
+                    if (inBatches == 0) {
+                        outcome = "dissolved";
+                    } else if (fragments.size() == 1 && inBatches == caseSet.length) {
+                        outcome = downstream.signatures[largestBatch] == upstream.signatures[i] && downstream.caseSets[largestBatch].length == caseSet.length ? "continued" : "merged";
+                    } else {
+                        outcome = "split";
+                    }
+                    rows.add(upstream.name + "," + (i + 1) + "," + caseSet.length + "," + downstream.name + "," + reached + "," + inBatches + "," + fragments.size() + "," + largestFragment + "," + (largestBatch >= 0 ? String.valueOf(largestBatch + 1) : "-") + "," + (largestBatch >= 0 ? String.valueOf(downstream.caseSets[largestBatch].length) : "-") + "," + outcome);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Prints the propagation of all batches to their adjacent segments
+     *
+     * @param outputDirectory
+     * @throws Exception
+     */
+    public void printPropagation(String outputDirectory) throws Exception {
+        String pathName = outputDirectory + "\\Statistics\\batch_propagation.csv";
+        FileWriter fw = new FileWriter(pathName);
+        fw.write("segmentKey,i,k_i,nextSegmentKey,reached,inBatches,fragments,largestFragment,j,k_j,outcome");
+        fw.write("\n");
+        List<String> rows = analyze();
+        for (int i = 0; i < rows.size(); i++) {
+            fw.write(rows.get(i));
+            fw.write("\n");
+        }
+        fw.flush();
+        fw.close();
+    }
+}
@@ -0,0 +1,170 @@
+import java.io.FileWriter;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+public class BatchSignificance {
+    public static final long HALF_DAY = 43200000L;
+    public static final long ROUNDED_END_OFFSET = 43140000L; //11:59 into the half day, as in Trace.getEndRounded
+
+    public int minBatchSize;
+    public boolean rounded;
+    public int nrPermutations;
+    public long seed;
+    // rows by segment, in the order the segments were added
+    public Map<String, List<String>> rows;
+
+    public BatchSignificance(int minBatchSize, String nonFIFO, int nrPermutations, long seed) {
+        this.minBatchSize = minBatchSize;
+        this.rounded = nonFIFO.equals("y");
+        this.nrPermutations = nrPermutations;
+        this.seed = seed;
+        this.rows = new LinkedHashMap<>();
+    }
+
+    /**
+     * Tests whether the batches of a segment could arise by chance. Under the null model the waiting times of the cases
+     * are exchangeable: each permutation reassigns them randomly to the observed start times, after which batches are
+     * detected as before (cases with the same end time, or the same rounded end time for non-FIFO). Re-pairing the
+     * observed start and end times instead would leave the set of end times, and so the batches, unchanged. For every
+     * batch size threshold (minBatchSize, 2 minBatchSize, 4 minBatchSize, ... up to the largest batch) the p-value is the
+     * fraction of permutations with at least as many batches as observed. Permutations run in parallel, each with its
+     * own random stream derived from the seed, so results are reproducible regardless of scheduling. Segments can be
+     * added concurrently.
+     *
+     * @param segment
+     */
+    public void addSegment(Segment segment) {
+        synchronized (this) {
+            if (rows.containsKey(segment.getName())) {
+                return;
+            }
+        }
+        List<Trace> traces = segment.getTraces();
+        long[] starts = new long[traces.size()];
+        long[] durations = new long[traces.size()];
+        for (int i = 0; i < traces.size(); i++) {
+            starts[i] = traces.get(i).getStart();
+            durations[i] = traces.get(i).getDuration();
+        }
+
+        // every batch has at least one case; a threshold of 0 would also never grow
+        int smallestThreshold = Math.max(1, minBatchSize);
+        int largestBatch = smallestThreshold;
+        for (Batch batch : segment.getBatches()) {
+            largestBatch = Math.max(largestBatch, batch.getSize());
+        }
+        List<Integer> sizes = new ArrayList<>();
+        for (long threshold = smallestThreshold; threshold <= largestBatch; threshold *= 2) {
+            sizes.add((int) threshold);
+        }
+        int[] thresholds = new int[sizes.size()];
+        for (int j = 0; j < thresholds.length; j++) {
+            thresholds[j] = sizes.get(j);
+        }
+
+        // observed counts use the same detection as the permutations
+        int[] observed = new int[thresholds.length];
+        countBatches(starts, durations, thresholds, new long[durations.length], observed);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] seeds = new long[nrPermutations];
+        for (int k = 0; k < nrPermutations; k++) {
+            seeds[k] = random.nextLong();
+        }
+        int[][] counts = new int[nrPermutations][thresholds.length];
+        if (nrPermutations > 0) {
+            ForkJoinPool.commonPool().invoke(new PermutationTask(this, starts, durations, thresholds, seeds, counts, 0, nrPermutations));
+        }
+
+        List<String> segmentRows = new ArrayList<>();
+        for (int j = 0; j < thresholds.length; j++) {
+            int atLeastAsMany = 0;
+            int max = 0;
+            double sum = 0;
+            for (int k = 0; k < nrPermutations; k++) {
+                if (counts[k][j] >= observed[j]) {
+                    atLeastAsMany++;
+                }
+                max = Math.max(max, counts[k][j]);
+                sum += counts[k][j];
+            }
+            double mean = nrPermutations > 0 ? sum / nrPermutations : Double.NaN;
+            double pValue = (1.0 + atLeastAsMany) / (1.0 + nrPermutations);
+            segmentRows.add(segment.getName() + "," + thresholds[j] + "," + observed[j] + "," + mean + "," + max + "," + nrPermutations + "," + pValue);
+        }
+        synchronized (this) {
+            rows.put(segment.getName(), segmentRows);
+        }
+    }
+
+    /**
+     * Counts the batches per threshold for the given assignment of waiting times to start times
+     *
+     * @param starts
+     * @param durations waiting time of the case starting at starts[i]
+     * @param thresholds ascending batch sizes
+     * @param ends scratch buffer
+     * @param count receives the number of batches per threshold
+     */
+    public void countBatches(long[] starts, long[] durations, int[] thresholds, long[] ends, int[] count) {
+        TimeZone timeZone = TimeZone.getDefault();
+        for (int i = 0; i < ends.length; i++) {
+            ends[i] = rounded ? roundEnd(starts[i] + durations[i], timeZone) : starts[i] + durations[i];
+        }
+        Arrays.sort(ends);
+        Arrays.fill(count, 0);
+        int runStart = 0;
+        for (int i = 1; i <= ends.length; i++) {
+            if (i == ends.length || ends[i] != ends[runStart]) {
+                int size = i - runStart;
+                for (int j = 0; j < thresholds.length && thresholds[j] <= size; j++) {
+                    count[j]++;
+                }
+                runStart = i;
+            }
+        }
+    }
+
+    /**
+     * Rounds an end time to 11:59 or 23:59 local time, like Trace.getEndRounded but without a Calendar per call
+     *
+     * @param end
+     * @param timeZone
+     * @return rounded end
+     */
+    public static long roundEnd(long end, TimeZone timeZone) {
+        long local = end + timeZone.getOffset(end);
+        long roundedLocal = Math.floorDiv(local, HALF_DAY) * HALF_DAY + ROUNDED_END_OFFSET;
+        return roundedLocal - timeZone.getOffset(roundedLocal - timeZone.getOffset(end));
+    }
+
+    /**
+     * Orders the rows as in the segment list, so the output does not depend on the order the segments were mined in
+     *
+     * @param allSegments
+     */
+    public synchronized void orderSegments(List<String> allSegments) {
+        Map<String, List<String>> ordered = new LinkedHashMap<>();
+        for (String name : allSegments) {
+            if (rows.containsKey(name)) {
+                ordered.put(name, rows.get(name));
+            }
+        }
+        rows = ordered;
+    }
+
+    public void printSignificance(String outputDirectory) throws Exception {
+        String pathName = outputDirectory + "\\Statistics\\batch_significance.csv";
+        FileWriter fw = new FileWriter(pathName);
+        fw.write("segmentKey,minBatchSize,observedBatches,meanPermutedBatches,maxPermutedBatches,permutations,p");
+        fw.write("\n");
+        for (List<String> segmentRows : rows.values()) {
+            for (int i = 0; i < segmentRows.size(); i++) {
+                fw.write(segmentRows.get(i));
+                fw.write("\n");
+            }
+        }
+        fw.flush();
+        fw.close();
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+public class BatchStatisticsTask extends RecursiveAction {
+    // ranges of at most this many batches are processed sequentially
+    public static final int THRESHOLD = 64;
+
+    public List<Batch> batches;
+    public int from;
+    public int to;
+
+    public BatchStatisticsTask(List<Batch> batches, int from, int to) {
+        this.batches = batches;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Calculates the waiting time percentiles of a single batch, using the given sketch as scratch space (means and
+     * standard deviations are already computed when the batch is created)
+     *
+     * @param batch
+     * @param sketch
+     */
+    public static void calculate(Batch batch, QuantileSketch sketch) {
+        sketch.clear();
+        batch.addWaitingTimesTo(sketch);
+        batch.setWaitingTimePercentiles(sketch);
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            QuantileSketch sketch = new QuantileSketch(); //reused for all batches in this range
+            for (int i = from; i < to; i++) {
+                calculate(batches.get(i), sketch);
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new BatchStatisticsTask(batches, from, middle), new BatchStatisticsTask(batches, middle, to));
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CaseDictionary {
+    // global dense index of every case identifier over all segments, shared by the analyses across segments
+    public ConcurrentHashMap<String, Integer> caseIndex;
+    public AtomicInteger nrCases;
+
+    public CaseDictionary() {
+        this.caseIndex = new ConcurrentHashMap<>();
+        this.nrCases = new AtomicInteger();
+    }
+
+    /**
+     * Returns the index of a case identifier, assigning the next free index if it was not seen before. Safe to call
+     * from any number of threads; the indices are dense, but their order depends on the order cases are first seen.
+     *
+     * @param caseID
+     * @return index
+     */
+    public int getIndex(String caseID) {
+        Integer index = caseIndex.get(caseID);
+        if (index == null) {
+            index = caseIndex.computeIfAbsent(caseID, id -> nrCases.getAndIncrement());
+        }
+        return index;
+    }
+
+    public int size() {
+        return nrCases.get();
+    }
+
+    public List<String> getCaseIDs() {
+        return new ArrayList<>(caseIndex.keySet());
+    }
+}
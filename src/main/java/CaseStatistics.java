@@ -0,0 +1,105 @@
+import java.io.FileWriter;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class CaseStatistics {
+    // global dictionary of case identifiers over all segments
+    public CaseDictionary cases;
+    // every thread accumulates into its own partial, so segments can be added concurrently without locking
+    public ThreadLocal<Partial> partial;
+    public Queue<Partial> partials;
+
+    public static class Partial {
+        public int[] nrSegments = new int[1024];
+        public int[] nrBatchedSegments = new int[1024];
+        // in milliseconds, so the sums are exact and do not depend on how segments were spread over threads
+        public long[] waitingTime = new long[1024];
+        public long[] batchedWaitingTime = new long[1024];
+
+        public void add(int caseIndex, boolean batched, long duration) {
+            if (caseIndex >= nrSegments.length) {
+                int capacity = Math.max(caseIndex + 1, 2 * nrSegments.length);
+                nrSegments = Arrays.copyOf(nrSegments, capacity);
+                nrBatchedSegments = Arrays.copyOf(nrBatchedSegments, capacity);
+                waitingTime = Arrays.copyOf(waitingTime, capacity);
+                batchedWaitingTime = Arrays.copyOf(batchedWaitingTime, capacity);
+            }
+            nrSegments[caseIndex]++;
+            waitingTime[caseIndex] += duration;
+            if (batched) {
+                nrBatchedSegments[caseIndex]++;
+                batchedWaitingTime[caseIndex] += duration;
+            }
+        }
+    }
+
+    public CaseStatistics(CaseDictionary cases) {
+        this.cases = cases;
+        this.partials = new ConcurrentLinkedQueue<>();
+        this.partial = ThreadLocal.withInitial(() -> {
+            Partial threadPartial = new Partial();
+            partials.add(threadPartial);
+            return threadPartial;
+        });
+    }
+
+    /**
+     * Adds the traces of a mined segment to the accumulators of their cases: one more segment, and one more batched
+     * segment if the case was batched there, with its waiting time
+     *
+     * @param segment
+     */
+    public void addSegment(Segment segment) {
+        Partial threadPartial = partial.get();
+        List<Trace> traces = segment.getTraces();
+        for (int i = 0; i < traces.size(); i++) {
+            Trace trace = traces.get(i);
+            threadPartial.add(cases.getIndex(trace.getCaseID()), trace.getBatched(), trace.getDuration());
+        }
+    }
+
+    /**
+     * Merges the partials of all threads and formats a row per case: the number of segments it passed and was batched
+     * in, and its total waiting time and waiting time in batches (in hours)
+     *
+     * @return rows, ordered by caseID
+     */
+    public List<String> calculateCaseStatistics() {
+        int n = cases.size();
+        int[] nrSegments = new int[n];
+        int[] nrBatchedSegments = new int[n];
+        long[] waitingTime = new long[n];
+        long[] batchedWaitingTime = new long[n];
+        for (Partial threadPartial : partials) {
+            int length = Math.min(n, threadPartial.nrSegments.length);
+            for (int c = 0; c < length; c++) {
+                nrSegments[c] += threadPartial.nrSegments[c];
+                nrBatchedSegments[c] += threadPartial.nrBatchedSegments[c];
+                waitingTime[c] += threadPartial.waitingTime[c];
+                batchedWaitingTime[c] += threadPartial.batchedWaitingTime[c];
+            }
+        }
+        List<String> caseIDs = cases.getCaseIDs();
+        Collections.sort(caseIDs);
+        List<String> rows = new ArrayList<>(caseIDs.size());
+        for (String caseID : caseIDs) {
+            int c = cases.getIndex(caseID);
+            rows.add(caseID + "," + nrSegments[c] + "," + nrBatchedSegments[c] + "," + 1.0 * waitingTime[c] / 3600000 + "," + 1.0 * batchedWaitingTime[c] / 3600000);
+        }
+        return rows;
+    }
+
+    public void printCaseStatistics(String outputDirectory) throws Exception {
+        String pathName = outputDirectory + "\\Statistics\\case_statistics.csv";
+        FileWriter fw = new FileWriter(pathName);
+        fw.write("caseID,segments,batchedSegments,W_total,W_batched");
+        fw.write("\n");
+        List<String> rows = calculateCaseStatistics();
+        for (int i = 0; i < rows.size(); i++) {
+            fw.write(rows.get(i));
+            fw.write("\n");
+        }
+        fw.flush();
+        fw.close();
+    }
+}
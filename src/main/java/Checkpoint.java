@@ -0,0 +1,154 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.stream.Stream;
+
+public class Checkpoint {
+    public static final String MANIFEST_FILE = "manifest.csv";
+
+    public Path directory;
+    public Path manifest;
+    // completed segments by their position in the segment list: {segment name, size of the annotated log, input fingerprint}
+    public Map<Integer, String[]> completed;
+
+    /**
+     * Opens the checkpoint of a run in the output directory. The first line of the manifest holds the run parameters;
+     * a checkpoint left by a run with other parameters is discarded.
+     *
+     * @param outputDirectory
+     * @param parameters
+     * @throws Exception
+     */
+    public Checkpoint(String outputDirectory, String parameters) throws Exception {
+        this.directory = Paths.get(outputDirectory + "\\Checkpoint");
+        this.manifest = directory.resolve(MANIFEST_FILE);
+        this.completed = new HashMap<>();
+
+        if (Files.exists(manifest)) {
+            List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+            if (!lines.isEmpty() && lines.get(0).equals(parameters)) {
+                for (int i = 1; i < lines.size(); i++) {
+                    // index,logSize,fingerprint,name; an incomplete last line of an interrupted append is ignored
+                    String[] fields = lines.get(i).split(",", 4);
+                    if (fields.length == 4 && Files.isDirectory(directory.resolve(fields[0]))) {
+                        completed.put(Integer.parseInt(fields[0]), new String[]{fields[3], fields[1], fields[2]});
+                    }
+                }
+                return;
+            }
+            delete();
+        }
+        Files.createDirectories(directory);
+        append(parameters);
+    }
+
+    public int getNrCompleted() {
+        return completed.size();
+    }
+
+    /**
+     * Fingerprints the input files of a segment by their paths, sizes and modification times, so a segment is not
+     * restored if its input changed since the interrupted run (without reading the files, unlike the cache key)
+     *
+     * @param files
+     * @return fingerprint
+     * @throws Exception
+     */
+    public static String fingerprint(List<Path> files) throws Exception {
+        List<Path> sortedFiles = new ArrayList<>(files);
+        Collections.sort(sortedFiles);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (Path file : sortedFiles) {
+            digest.update((file + "\n" + Files.size(file) + "\n" + Files.getLastModifiedTime(file).toMillis() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder fingerprint = new StringBuilder();
+        for (byte b : digest.digest()) {
+            fingerprint.append(String.format("%02x", b));
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Loads the statistics rows of a segment completed by an earlier, interrupted run
+     *
+     * @param index
+     * @param name
+     * @param tables
+     * @param logPathName
+     * @param fingerprint of the input files of the segment
+     * @return result, or null if the segment was not completed or its input files or annotated log have changed since
+     * @throws Exception
+     */
+    public synchronized SegmentResult load(int index, String name, Collection<String> tables, String logPathName, String fingerprint) throws Exception {
+        String[] entry = completed.get(index);
+        if (entry == null || !entry[0].equals(name) || !entry[2].equals(fingerprint)) {
+            return null;
+        }
+        Path log = Paths.get(logPathName);
+        if (!Files.exists(log) || Files.size(log) != Long.parseLong(entry[1])) {
+            return null;
+        }
+        return SegmentResult.read(directory.resolve(String.valueOf(index)), name, tables);
+    }
+
+    /**
+     * Commits a completed segment: its rows are written to a temporary directory that is renamed into place, after
+     * which the segment is appended to the manifest
+     *
+     * @param index
+     * @param result
+     * @param tables
+     * @param logPathName
+     * @param fingerprint of the input files of the segment
+     * @throws Exception
+     */
+    public synchronized void commit(int index, SegmentResult result, Collection<String> tables, String logPathName, String fingerprint) throws Exception {
+        Path log = Paths.get(logPathName);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Path entry = directory.resolve(String.valueOf(index));
+        Path temporary = Files.createTempDirectory(directory, index + ".tmp");
+        result.write(temporary, tables);
+        if (Files.exists(entry)) {
+            deleteRecursively(entry);
+        }
+        Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+        append(index + "," + Files.size(log) + "," + fingerprint + "," + result.getName());
+        completed.put(index, new String[]{result.getName(), String.valueOf(Files.size(log)), fingerprint});
+    }
+
+    /**
+     * Removes the checkpoint, e.g. after the run has completed
+     *
+     * @throws Exception
+     */
+    public void delete() throws Exception {
+        if (Files.exists(directory)) {
+            deleteRecursively(directory);
+        }
+        completed.clear();
+    }
+
+    public void append(String line) throws Exception {
+        try (FileChannel channel = FileChannel.open(manifest, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(StandardCharsets.UTF_8.encode(line + "\n"));
+            channel.force(true);
+        }
+    }
+
+    public static void deleteRecursively(Path path) throws Exception {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(path)) {
+            paths = new ArrayList<>();
+            walk.forEach(paths::add);
+        }
+        Collections.reverse(paths);
+        for (Path p : paths) {
+            Files.delete(p);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import com.opencsv.CSVReader;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+
+public class ConcurrentFileLoader {
+    // at most this many files are open at the same time
+    public static final int MAX_OPEN_FILES = 64;
+    public static final int BUFFER_SIZE = 1 << 16;
+    // threads of the platform pool used when virtual threads are not available
+    public static final int PLATFORM_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    // shared by all loads, so the cap on open files holds however many segments are read at the same time
+    public static final ExecutorService EXECUTOR = newExecutor();
+    public static final Semaphore OPEN_FILES = new Semaphore(MAX_OPEN_FILES);
+
+    /**
+     * Creates an executor that runs every task on its own virtual thread (Java 21 and later, looked up by reflection
+     * since the tool targets older JDKs), or else a bounded pool of daemon platform threads
+     *
+     * @return executor, whose threads do not keep the JVM alive
+     */
+    public static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(PLATFORM_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "file-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Reads the observations of a segment from its files concurrently. Reading many small files is dominated by the
+     * latency of opening them, so all files are requested at once, while a semaphore shared by all loads caps the
+     * number of open files.
+     * The observations are returned in the order of the files, as if they were read one after the other. A segment in
+     * a single file is read through the executor as well, so segments mined at the same time read concurrently.
+     *
+     * @param files
+     * @param segment
+     * @return observations
+     * @throws Exception
+     */
+    public static List<Trace> load(List<Path> files, String segment) throws Exception {
+        return load(files, segment, (csvRow, trace) -> trace);
+    }
+
+    /**
+     * Reads the observations of a segment from its files concurrently, like load(files, segment), and converts every
+     * valid row, e.g. to keep extra columns along with its trace
+     *
+     * @param files
+     * @param segment
+     * @param converter maps a row and its trace to an element of the result; called concurrently for different files
+     * @return converted observations, in the order of the files
+     * @throws Exception
+     */
+    public static <T> List<T> load(List<Path> files, String segment, BiFunction<String[], Trace, T> converter) throws Exception {
+        List<Future<List<T>>> futures = new ArrayList<>();
+        for (Path file : files) {
+            futures.add(EXECUTOR.submit(() -> {
+                OPEN_FILES.acquire();
+                try {
+                    return read(file, segment, converter);
+                } finally {
+                    OPEN_FILES.release();
+                }
+            }));
+        }
+        List<T> allTraces = new ArrayList<>();
+        try {
+            for (Future<List<T>> future : futures) {
+                try {
+                    allTraces.addAll(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            // the executor is shared, so only the remaining reads of this load are cancelled
+            for (Future<List<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return allTraces;
+    }
+
+    /**
+     * Reads the observations of a segment from a single file (caseID, segment, start, duration). Rows with fewer
+     * columns or with a start or duration that is not a number are skipped and counted on the console.
+     *
+     * @param file
+     * @param segment
+     * @param converter maps a row and its trace to an element of the result
+     * @return converted observations
+     * @throws Exception
+     */
+    public static <T> List<T> read(Path file, String segment, BiFunction<String[], Trace, T> converter) throws Exception {
+        List<T> traces = new ArrayList<>();
+        int malformedRows = 0;
+        try (CSVReader reader = new CSVReader(new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE), ',')) {
+            for (String[] csvRow : reader) {
+                if (csvRow.length < 4) {
+                    malformedRows++;
+                    continue;
+                }
+                if (segment.equals(csvRow[1])) {
+                    try {
+                        traces.add(converter.apply(csvRow, new Trace(csvRow[0], Long.parseLong(csvRow[2]), Long.parseLong(csvRow[3]))));
+                    } catch (NumberFormatException e) {
+                        malformedRows++;
+                    }
+                }
+            }
+        }
+        if (malformedRows > 0) {
+            System.out.println("\tSkipped " + malformedRows + " malformed rows in " + file);
+        }
+        return traces;
+    }
+}
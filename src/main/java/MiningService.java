@@ -0,0 +1,174 @@
+/* E.L. Klijn
+ * Performance Mining for Batch Processing Using the Performance Spectrum
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+
+public class MiningService {
+    public List<String> allSegments;
+    public SegmentStore store;
+
+    public MiningService(String inputDirectory, long memoryBudget) throws Exception {
+        // the input directory is walked once; segments are read from the files found at startup
+        Map<String, List<Path>> segmentFiles = BatchMiner.listSegmentFiles(inputDirectory);
+        this.allSegments = new ArrayList<>(segmentFiles.keySet());
+        this.store = new SegmentStore(segmentFiles, memoryBudget);
+    }
+
+    /**
+     * Parses the query string of a request into a map of parameter names to (possibly repeated) values
+     *
+     * @param query
+     * @return parameters
+     * @throws Exception
+     */
+    public static Map<String, List<String>> parseQuery(String query) throws Exception {
+        Map<String, List<String>> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int index = pair.indexOf("=");
+            String key = URLDecoder.decode(index < 0 ? pair : pair.substring(0, index), "UTF-8");
+            String value = index < 0 ? "" : URLDecoder.decode(pair.substring(index + 1), "UTF-8");
+            parameters.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        return parameters;
+    }
+
+    public static String getParameter(Map<String, List<String>> parameters, String key, String defaultValue) {
+        List<String> values = parameters.get(key);
+        if (values == null || values.isEmpty()) {
+            return defaultValue;
+        }
+        return values.get(0);
+    }
+
+    public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    /**
+     * GET /segments: lists all segments of the input directory, one per line
+     *
+     * @param exchange
+     * @throws IOException
+     */
+    public void handleSegments(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, String.join("\n", allSegments) + "\n");
+    }
+
+    /**
+     * GET /statistics/{table}?segment=A:B&segment=B:C&minBatchSize=20&nonFIFO=n&bucketWidth=3600000: mines the requested segments (all
+     * segments if none is given) and streams the rows of one of the statistics tables as CSV, one segment at a time
+     *
+     * @param exchange
+     * @throws IOException
+     */
+    public void handleStatistics(HttpExchange exchange) throws IOException {
+        String table = exchange.getRequestURI().getPath().substring("/statistics/".length());
+        String header = BatchMiner.TABLE_HEADERS.get(table);
+        if (header == null) {
+            respond(exchange, 404, "Unknown table " + table + ", expected one of " + BatchMiner.TABLE_HEADERS.keySet() + "\n");
+            return;
+        }
+        MiningSession session;
+        List<String> segments;
+        try {
+            Map<String, List<String>> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            int minBatchSize = Integer.parseInt(getParameter(parameters, "minBatchSize", "20"));
+            String nonFIFO = getParameter(parameters, "nonFIFO", "n");
+            long bucketWidth = Long.parseLong(getParameter(parameters, "bucketWidth", String.valueOf(BatchMiner.DEFAULT_BUCKET_WIDTH)));
+            if (minBatchSize < 1 || !(nonFIFO.equals("y") || nonFIFO.equals("n")) || bucketWidth < 1) {
+                throw new IllegalArgumentException("minBatchSize and bucketWidth must be positive and nonFIFO y or n");
+            }
+            session = new MiningSession(minBatchSize, nonFIFO, bucketWidth);
+            segments = parameters.getOrDefault("segment", allSegments);
+            for (String segment : segments) {
+                if (!allSegments.contains(segment)) {
+                    throw new IllegalArgumentException("Unknown segment " + segment);
+                }
+            }
+        } catch (Exception e) {
+            respond(exchange, 400, e.getMessage() + "\n");
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0); //chunked
+        Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        try {
+            writer.write(header);
+            writer.write("\n");
+            for (String name : segments) {
+                SegmentData data = store.get(name);
+                if (data == null) {
+                    continue;
+                }
+                Segment segment = session.mine(name, data.caseIDs, data.starts, data.durations);
+                List<String> rows = session.toResult(segment).getRows(table);
+                for (int i = 0; i < rows.size(); i++) {
+                    writer.write(rows.get(i));
+                    writer.write("\n");
+                }
+                writer.flush();
+            }
+        } catch (Exception e) {
+            // the status has been sent already; the truncated response is ended with the error
+            writer.write("# error: " + e + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * GET /status: number of resident segments and their estimated size
+     *
+     * @param exchange
+     * @throws IOException
+     */
+    public void handleStatus(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "segments," + allSegments.size() + "\nresident," + store.getNrResidentSegments() + "\nresidentBytes," + store.getUsedBytes() + "\nbudgetBytes," + store.memoryBudget + "\n");
+    }
+
+    /**
+     * Main method: keeps a mining service running on localhost, so repeated analyses of the same PSM data neither pay
+     * JVM startup nor re-parse the CSV files of recently used segments.
+     *
+     * Arguments: inputDirectory port memoryBudgetMB
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String args[]) throws Exception {
+        String inputDirectory = args[0];
+        int port = Integer.parseInt(args[1]);
+        long memoryBudget = Long.parseLong(args[2]) * 1024 * 1024;
+
+        System.out.println("Listing segments...");
+        MiningService service = new MiningService(inputDirectory, memoryBudget);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/segments", service::handleSegments);
+        server.createContext("/statistics/", service::handleStatistics);
+        server.createContext("/status", service::handleStatus);
+        server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+        server.start();
+        System.out.println("Mining service listening on http://localhost:" + port + "/");
+    }
+}
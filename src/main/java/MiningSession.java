@@ -0,0 +1,134 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+public class MiningSession {
+    public final int minBatchSize;
+    public final String nonFIFO;
+    public final long bucketWidth;
+
+    /**
+     * Creates a reusable session for mining in-memory observations with fixed parameters. A session holds no mutable
+     * state, so it can be shared by any number of threads; every call works on its own traces.
+     *
+     * @param minBatchSize
+     * @param nonFIFO use the 12h non-FIFO time window (y/n)
+     */
+    public MiningSession(int minBatchSize, String nonFIFO) {
+        this(minBatchSize, nonFIFO, BatchMiner.DEFAULT_BUCKET_WIDTH);
+    }
+
+    /**
+     * @param minBatchSize
+     * @param nonFIFO use the 12h non-FIFO time window (y/n)
+     * @param bucketWidth of the load profile, in milliseconds (whole minutes)
+     */
+    public MiningSession(int minBatchSize, String nonFIFO, long bucketWidth) {
+        BatchMiner.checkBucketWidth(bucketWidth);
+        this.minBatchSize = minBatchSize;
+        this.nonFIFO = nonFIFO;
+        this.bucketWidth = bucketWidth;
+    }
+
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    public String getNonFIFO() {
+        return nonFIFO;
+    }
+
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Mines a segment given as parallel arrays of case identifiers, start times and durations (in milliseconds)
+     *
+     * @param segment
+     * @param caseIDs
+     * @param starts
+     * @param durations
+     * @return segment, or null if there are no observations
+     */
+    public Segment mine(String segment, String[] caseIDs, long[] starts, long[] durations) {
+        if (caseIDs.length != starts.length || starts.length != durations.length) {
+            throw new IllegalArgumentException("caseIDs, starts and durations must have the same length");
+        }
+        List<Trace> traces = new ArrayList<>(caseIDs.length);
+        for (int i = 0; i < caseIDs.length; i++) {
+            traces.add(new Trace(caseIDs[i], starts[i], durations[i]));
+        }
+        return mine(segment, traces);
+    }
+
+    /**
+     * Mines a segment from a list of traces, which is sorted in place and owned by the returned segment. All segment
+     * and batch statistics are calculated, so the getters of the segment and its batches can be used directly.
+     *
+     * @param segment
+     * @param traces
+     * @return segment, or null if there are no observations
+     */
+    public Segment mine(String segment, List<Trace> traces) {
+        if (traces.isEmpty()) {
+            return null;
+        }
+        Segment minedSegment = BatchMiner.mineSegment(segment, traces, minBatchSize, nonFIFO, bucketWidth);
+        minedSegment.partitionTraces();
+        List<Batch> batches = minedSegment.getBatches();
+        ForkJoinPool.commonPool().invoke(new BatchStatisticsTask(batches, 0, batches.size()));
+        return minedSegment;
+    }
+
+    /**
+     * Mines observations of any number of segments, in order of the first observation of each segment
+     *
+     * @param observations
+     * @return segments
+     */
+    public List<Segment> mine(Iterator<Observation> observations) {
+        List<Segment> segments = new ArrayList<>();
+        mine(observations, segments::add);
+        return segments;
+    }
+
+    /**
+     * Mines observations of any number of segments and passes every mined segment to a callback, in order of the
+     * first observation of each segment. Observations may arrive in any order, so a segment is only known to be
+     * complete at the end of the input: all observations are held in memory until then, and segments are mined and
+     * released one at a time afterwards, so the caller does not need to hold all mined segments. For unbounded input,
+     * use StreamingBatchMiner instead.
+     *
+     * @param observations
+     * @param callback
+     */
+    public void mine(Iterator<Observation> observations, Consumer<Segment> callback) {
+        Map<String, List<Trace>> tracesPerSegment = new LinkedHashMap<>();
+        while (observations.hasNext()) {
+            Observation observation = observations.next();
+            List<Trace> traces = tracesPerSegment.get(observation.getSegment());
+            if (traces == null) {
+                traces = new ArrayList<>();
+                tracesPerSegment.put(observation.getSegment(), traces);
+            }
+            traces.add(observation.toTrace());
+        }
+        Iterator<Map.Entry<String, List<Trace>>> iterator = tracesPerSegment.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, List<Trace>> entry = iterator.next();
+            iterator.remove();
+            callback.accept(mine(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Formats the statistics of a mined segment as the rows of the statistics tables (see BatchMiner.TABLE_HEADERS)
+     *
+     * @param segment
+     * @return result
+     */
+    public SegmentResult toResult(Segment segment) {
+        return BatchMiner.calculateStatistics(segment);
+    }
+}
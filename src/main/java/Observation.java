@@ -0,0 +1,47 @@
+public class Observation {
+    public String caseID;
+    public String segment;
+    public long start;
+    public long duration;
+
+    public Observation(String caseID, String segment, long start, long duration) {
+        this.caseID = caseID;
+        this.segment = segment;
+        this.start = start;
+        this.duration = duration;
+    }
+
+    /**
+     * Parses a row of a PSM export (caseID, segment, start, duration)
+     *
+     * @param csvRow
+     * @return observation
+     */
+    public static Observation fromCSVRow(String[] csvRow) {
+        return new Observation(csvRow[0], csvRow[1], Long.parseLong(csvRow[2]), Long.parseLong(csvRow[3]));
+    }
+
+    public String getCaseID() {
+        return caseID;
+    }
+
+    public String getSegment() {
+        return segment;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public long getEnd() {
+        return start + duration;
+    }
+
+    public Trace toTrace() {
+        return new Trace(caseID, start, duration);
+    }
+}
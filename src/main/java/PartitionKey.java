@@ -0,0 +1,26 @@
+import java.util.Arrays;
+
+public class PartitionKey {
+    // dictionary codes of the attribute values, one per attribute column
+    public int[] codes;
+    public int hash;
+
+    public PartitionKey(int[] codes) {
+        this.codes = codes;
+        this.hash = Arrays.hashCode(codes);
+    }
+
+    public int[] getCodes() {
+        return codes;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PartitionKey && hash == ((PartitionKey) other).hash && Arrays.equals(codes, ((PartitionKey) other).codes);
+    }
+}
@@ -0,0 +1,39 @@
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+public class PartitionTask extends RecursiveAction {
+    public List<String> names;
+    public List<List<Trace>> partitions;
+    public int minBatchSize;
+    public String nonFIFO;
+    public long bucketWidth;
+    public Segment[] segments;
+    public SegmentResult[] results;
+    public int from;
+    public int to;
+
+    public PartitionTask(List<String> names, List<List<Trace>> partitions, int minBatchSize, String nonFIFO, long bucketWidth, Segment[] segments, SegmentResult[] results, int from, int to) {
+        this.names = names;
+        this.partitions = partitions;
+        this.minBatchSize = minBatchSize;
+        this.nonFIFO = nonFIFO;
+        this.bucketWidth = bucketWidth;
+        this.segments = segments;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from == 1) {
+            // every partition is sorted and scanned on its own, exactly like a segment
+            segments[from] = BatchMiner.mineSegment(names.get(from), partitions.get(from), minBatchSize, nonFIFO, bucketWidth);
+            results[from] = BatchMiner.calculateStatistics(segments[from]);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new PartitionTask(names, partitions, minBatchSize, nonFIFO, bucketWidth, segments, results, from, middle),
+                new PartitionTask(names, partitions, minBatchSize, nonFIFO, bucketWidth, segments, results, middle, to));
+    }
+}
@@ -0,0 +1,193 @@
+/* E.L. Klijn
+ * Performance Mining for Batch Processing Using the Performance Spectrum
+ */
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+public class PartitionedBatchMiner {
+    // column positions of the attributes that, together with the segment, define where batches are detected
+    public int[] attributeColumns;
+    // dictionary per attribute column: value to code, and code to value
+    public List<Map<String, Integer>> codes;
+    public List<List<String>> values;
+
+    public PartitionedBatchMiner(int[] attributeColumns) {
+        this.attributeColumns = attributeColumns;
+        this.codes = new ArrayList<>();
+        this.values = new ArrayList<>();
+        for (int j = 0; j < attributeColumns.length; j++) {
+            codes.add(new HashMap<>());
+            values.add(new ArrayList<>());
+        }
+    }
+
+    public int encode(int j, String value) {
+        Integer code = codes.get(j).get(value);
+        if (code == null) {
+            code = values.get(j).size();
+            codes.get(j).put(value, code);
+            values.get(j).add(value);
+        }
+        return code;
+    }
+
+    // an observation along with the values of its attribute columns
+    public static class AttributedTrace {
+        public String[] attributes;
+        public Trace trace;
+
+        public AttributedTrace(String[] attributes, Trace trace) {
+            this.attributes = attributes;
+            this.trace = trace;
+        }
+    }
+
+    /**
+     * Returns the name of a partition: the segment followed by its attribute values, e.g. "A:B [R1;X]". The name is
+     * part of the statistics tables (read back up to its first comma) and of the file names of the annotated logs, and
+     * is split into its activities at the first ":", so these characters are replaced in the values (see
+     * sanitizeValue).
+     *
+     * @param segment
+     * @param key
+     * @return name
+     */
+    public String getPartitionName(String segment, PartitionKey key) {
+        StringBuilder name = new StringBuilder(segment + " [");
+        for (int j = 0; j < key.getCodes().length; j++) {
+            if (j > 0) {
+                name.append(";");
+            }
+            name.append(sanitizeValue(values.get(j).get(key.getCodes()[j])));
+        }
+        return name.append("]").toString();
+    }
+
+    /**
+     * Replaces the characters of an attribute value that cannot appear in a partition name by "_": commas, the
+     * separators of the name ("[", "]", ";"), and characters that are not allowed in Windows file names (including
+     * ":", which would also split the activities of the segment)
+     *
+     * @param value
+     * @return sanitized value
+     */
+    public static String sanitizeValue(String value) {
+        StringBuilder sanitized = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            sanitized.append(c < 32 || ",[];<>:\"/\\|?*".indexOf(c) >= 0 ? '_' : c);
+        }
+        return sanitized.toString();
+    }
+
+    /**
+     * Reads the observations of a segment concurrently from its files (see ConcurrentFileLoader, which also skips
+     * malformed rows) and hash-partitions them on their dictionary-encoded attribute values, so any number of
+     * attributes costs one pass
+     *
+     * @param files input files of the segment
+     * @param segment
+     * @return observations by partition, in order of first occurrence
+     * @throws Exception
+     */
+    public Map<PartitionKey, List<Trace>> filterPartitions(List<Path> files, String segment) throws Exception {
+        List<AttributedTrace> rows = ConcurrentFileLoader.load(files, segment, (csvRow, trace) -> {
+            String[] attributes = new String[attributeColumns.length];
+            for (int j = 0; j < attributeColumns.length; j++) {
+                attributes[j] = attributeColumns[j] < csvRow.length ? csvRow[attributeColumns[j]] : "";
+            }
+            return new AttributedTrace(attributes, trace);
+        });
+        // the dictionaries are not thread-safe, so values are encoded once all files have been read
+        Map<PartitionKey, List<Trace>> partitions = new LinkedHashMap<>();
+        for (AttributedTrace row : rows) {
+            int[] rowCodes = new int[attributeColumns.length];
+            for (int j = 0; j < attributeColumns.length; j++) {
+                rowCodes[j] = encode(j, row.attributes[j]);
+            }
+            PartitionKey key = new PartitionKey(rowCodes);
+            List<Trace> traces = partitions.get(key);
+            if (traces == null) {
+                traces = new ArrayList<>();
+                partitions.put(key, traces);
+            }
+            traces.add(row.trace);
+        }
+        return partitions;
+    }
+
+    /**
+     * Reads a segment, mines its partitions in parallel and writes their annotated logs and batch interval indexes
+     *
+     * @param files input files of the segment
+     * @param segment
+     * @param minBatchSize
+     * @param nonFIFO
+     * @param bucketWidth of the load profile, in milliseconds
+     * @param outputDirectory
+     * @return results of the partitions, in order of first occurrence
+     * @throws Exception
+     */
+    public List<SegmentResult> processSegment(List<Path> files, String segment, int minBatchSize, String nonFIFO, long bucketWidth, String outputDirectory) throws Exception {
+        System.out.println("\tListing and partitioning observations...");
+        Map<PartitionKey, List<Trace>> partitions = filterPartitions(files, segment);
+        if (partitions.isEmpty()) {
+            System.out.println("Segment " + segment + " cannot be found.");
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>();
+        for (PartitionKey key : partitions.keySet()) {
+            names.add(getPartitionName(segment, key));
+        }
+
+        System.out.println("\tSorting observations and detecting batches in " + names.size() + " partitions...");
+        Segment[] segments = new Segment[names.size()];
+        SegmentResult[] results = new SegmentResult[names.size()];
+        ForkJoinPool.commonPool().invoke(new PartitionTask(names, new ArrayList<>(partitions.values()), minBatchSize, nonFIFO, bucketWidth, segments, results, 0, names.size()));
+
+        System.out.println("\tPrinting annotated logs to CSV...");
+        for (int i = 0; i < segments.length; i++) {
+            BatchMiner.segmentToCSVlog(segments[i].getTraces(), names.get(i), outputDirectory);
+            BatchIntervalIndex.build(segments[i]).write(BatchIntervalIndex.getIndexPathName(names.get(i), outputDirectory));
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Main method: detects batches per segment and combination of attribute values, e.g. per resource
+     *
+     * Arguments: inputDirectory minBatchSize nonFIFO(y/n) outputDirectory attributeColumns (comma separated positions
+     * of the extra columns, counting from 0, e.g. 4,5) [bucketWidth of the load profile in milliseconds]
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String args[]) throws Exception {
+        final long startTime = System.currentTimeMillis();
+        String inputDirectory = args[0];
+        int minBatchSize = Integer.parseInt(args[1]);
+        String nonFIFO = args[2];
+        String outputDirectory = args[3];
+        String[] columns = args[4].split(",");
+        int[] attributeColumns = new int[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            attributeColumns[j] = Integer.parseInt(columns[j].trim());
+        }
+        long bucketWidth = args.length > 5 ? Long.parseLong(args[5]) : BatchMiner.DEFAULT_BUCKET_WIDTH;
+        BatchMiner.checkBucketWidth(bucketWidth);
+
+        PartitionedBatchMiner miner = new PartitionedBatchMiner(attributeColumns);
+        List<SegmentResult> results = new ArrayList<>();
+        System.out.println("Listing segments...");
+        for (Map.Entry<String, List<Path>> segmentFiles : BatchMiner.listSegmentFiles(inputDirectory).entrySet()) {
+            System.out.println(segmentFiles.getKey().toUpperCase());
+            results.addAll(miner.processSegment(segmentFiles.getValue(), segmentFiles.getKey(), minBatchSize, nonFIFO, bucketWidth, outputDirectory));
+        }
+
+        System.out.println("Printing segment, batch and waiting time statistics...");
+        BatchMiner.printStatistics(results, outputDirectory);
+        System.out.println("\nTotal execution time: " + BatchMiner.getCurrentExecutionTimeString(startTime));
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+public class PermutationTask extends RecursiveAction {
+    // ranges of at most this many permutations are run sequentially, reusing the same buffers
+    public static final int THRESHOLD = 16;
+
+    public BatchSignificance test;
+    public long[] starts;
+    public long[] durations;
+    public int[] thresholds;
+    public long[] seeds;
+    public int[][] counts;
+    public int from;
+    public int to;
+
+    public PermutationTask(BatchSignificance test, long[] starts, long[] durations, int[] thresholds, long[] seeds, int[][] counts, int from, int to) {
+        this.test = test;
+        this.starts = starts;
+        this.durations = durations;
+        this.thresholds = thresholds;
+        this.seeds = seeds;
+        this.counts = counts;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Runs a single permutation: the waiting times of the cases are shuffled over their start times (Fisher-Yates,
+     * starting from the observed order so the result depends on the seed only) and the batches are counted per threshold
+     *
+     * @param seed
+     * @param permuted scratch buffer
+     * @param ends scratch buffer
+     * @param count receives the number of batches per threshold
+     */
+    public void permute(long seed, long[] permuted, long[] ends, int[] count) {
+        SplittableRandom random = new SplittableRandom(seed);
+        System.arraycopy(durations, 0, permuted, 0, permuted.length);
+        for (int i = permuted.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long duration = permuted[i];
+            permuted[i] = permuted[j];
+            permuted[j] = duration;
+        }
+        test.countBatches(starts, permuted, thresholds, ends, count);
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            long[] permuted = new long[durations.length];
+            long[] ends = new long[durations.length];
+            for (int k = from; k < to; k++) {
+                permute(seeds[k], permuted, ends, counts[k]);
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new PermutationTask(test, starts, durations, thresholds, seeds, counts, from, middle), new PermutationTask(test, starts, durations, thresholds, seeds, counts, middle, to));
+    }
+}
@@ -0,0 +1,101 @@
+import com.opencsv.CSVReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class PreviewBatchMiner {
+    public int minBatchSize;
+    public boolean nonFIFO;
+    public int maxSampledGroups;
+    public TimeZone timeZone;
+    // previews by segment, in the order of the segment list
+    public Map<String, SegmentPreview> segments;
+
+    public PreviewBatchMiner(int minBatchSize, boolean nonFIFO, int maxSampledGroups) {
+        this.minBatchSize = minBatchSize;
+        this.nonFIFO = nonFIFO;
+        this.maxSampledGroups = maxSampledGroups;
+        this.timeZone = TimeZone.getDefault();
+        this.segments = new LinkedHashMap<>();
+    }
+
+    /**
+     * Reads all PSM files found in a single walk over the input directory (see BatchMiner.listSegmentFiles). Every row
+     * is read, but only its end time is used; no traces are created or sorted and only the sampled groups are kept.
+     *
+     * @param inputDirectory
+     * @throws Exception
+     */
+    public void preview(String inputDirectory) throws Exception {
+        for (Map.Entry<String, List<Path>> segmentFiles : BatchMiner.listSegmentFiles(inputDirectory).entrySet()) {
+            SegmentPreview segment = new SegmentPreview(segmentFiles.getKey(), minBatchSize, maxSampledGroups);
+            segments.put(segmentFiles.getKey(), segment);
+            for (Path file : segmentFiles.getValue()) {
+                readFile(file, segment);
+            }
+        }
+    }
+
+    /**
+     * Adds the end times of all observations of a segment in a file to its preview. Every row is read and parsed like in
+     * a full run (see ConcurrentFileLoader.read), since whether a row is sampled depends on its end time; malformed rows
+     * are skipped.
+     *
+     * @param file
+     * @param segment
+     * @throws IOException
+     */
+    public void readFile(Path file, SegmentPreview segment) throws IOException {
+        try (CSVReader reader = new CSVReader(new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), ConcurrentFileLoader.BUFFER_SIZE), ',')) {
+            for (String[] csvRow : reader) {
+                // caseID, segment, start, duration
+                if (csvRow.length < 4 || !segment.getName().equals(csvRow[1])) {
+                    continue;
+                }
+                long end;
+                try {
+                    end = Long.parseLong(csvRow[2]) + Long.parseLong(csvRow[3]);
+                } catch (NumberFormatException e) {
+                    // header or malformed row
+                    continue;
+                }
+                segment.add(nonFIFO ? BatchSignificance.roundEnd(end, timeZone) : end);
+            }
+        }
+    }
+
+    /**
+     * Main method: estimates per segment how much it batches from a bounded sample, as a quick look before a full run
+     *
+     * Arguments: inputDirectory minBatchSize nonFIFO(y/n) maxSampledGroups outputDirectory
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String args[]) throws Exception {
+        final long startTime = System.currentTimeMillis();
+        String inputDirectory = args[0];
+        int minBatchSize = Integer.parseInt(args[1]);
+        boolean nonFIFO = args[2].equals("y");
+        int maxSampledGroups = Integer.parseInt(args[3]);
+        String outputDirectory = args[4];
+
+        PreviewBatchMiner miner = new PreviewBatchMiner(minBatchSize, nonFIFO, maxSampledGroups);
+        System.out.println("Sampling segments...");
+        miner.preview(inputDirectory);
+
+        String pathName = outputDirectory + "\\Statistics\\segment_preview.csv";
+        FileWriter fw = new FileWriter(pathName);
+        fw.write("segmentKey,n,sampleRate,sampledCases,BF,BF_error,m,m_error,mu_k,mu_k_error");
+        fw.write("\n");
+        for (SegmentPreview segment : miner.segments.values()) {
+            fw.write(segment.formatEstimates());
+            fw.write("\n");
+        }
+        fw.flush();
+        fw.close();
+        System.out.println("\nTotal execution time: " + BatchMiner.getCurrentExecutionTimeString(startTime));
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class QuantileSketch {
+    // relative accuracy of the reported quantiles and the range of values (in hours) that is bucketed logarithmically
+    public static final double RELATIVE_ACCURACY = 0.01;
+    public static final double MIN_VALUE = 1e-6;
+    public static final double MAX_VALUE = 1e6;
+
+    public static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    public static final double LOG_GAMMA = Math.log(GAMMA);
+    public static final int NR_BUCKETS = (int) Math.ceil(Math.log(MAX_VALUE / MIN_VALUE) / LOG_GAMMA) + 1;
+    public static final int BUCKETS_PER_DOUBLING = (int) Math.round(Math.log(2) / LOG_GAMMA);
+
+    public long[] counts;
+    public long zeroCount; //values below MIN_VALUE
+    public long count;
+    public double min;
+    public double max;
+    public int lowestBucket; public int highestBucket; //range of buckets touched since the last clear
+
+    public QuantileSketch() {
+        this.counts = new long[NR_BUCKETS];
+        clear();
+    }
+
+    /**
+     * Adds a single value to the sketch
+     *
+     * @param value
+     */
+    public void add(double value) {
+        count++;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        if (value < MIN_VALUE) {
+            zeroCount++;
+            return;
+        }
+        int bucket = bucketIndex(value);
+        counts[bucket]++;
+        if (bucket < lowestBucket) {
+            lowestBucket = bucket;
+        }
+        if (bucket > highestBucket) {
+            highestBucket = bucket;
+        }
+    }
+
+    /**
+     * Adds all values of an array to the sketch
+     *
+     * @param A
+     */
+    public void addAll(double[] A) {
+        for (int i = 0; i < A.length; i++) {
+            add(A[i]);
+        }
+    }
+
+    /**
+     * Merges the counts of another sketch into this one
+     *
+     * @param other
+     * @return this
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        for (int i = other.lowestBucket; i <= other.highestBucket; i++) {
+            counts[i] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        lowestBucket = Math.min(lowestBucket, other.lowestBucket);
+        highestBucket = Math.max(highestBucket, other.highestBucket);
+        return this;
+    }
+
+    /**
+     * Resets the sketch, only clearing the buckets that were touched so it can cheaply be reused
+     */
+    public void clear() {
+        if (count > 0 && lowestBucket <= highestBucket) {
+            Arrays.fill(counts, lowestBucket, highestBucket + 1, 0L);
+        }
+        zeroCount = 0;
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        lowestBucket = NR_BUCKETS;
+        highestBucket = -1;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the estimated q-quantile (0 <= q <= 1), within RELATIVE_ACCURACY of the exact value, or NaN if the
+     * sketch is empty
+     *
+     * @param q
+     * @return quantile
+     */
+    public double getQuantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) {
+            return min < MIN_VALUE ? Math.max(min, 0.0) : 0.0;
+        }
+        long seen = zeroCount;
+        for (int i = lowestBucket; i <= highestBucket; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                double estimate = 2 * getLowerBound(i) * GAMMA / (GAMMA + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the bucket index of a value of at least MIN_VALUE; values above MAX_VALUE go to the last bucket
+     *
+     * @param value
+     * @return bucket
+     */
+    public static int bucketIndex(double value) {
+        int bucket = (int) Math.ceil(Math.log(value / MIN_VALUE) / LOG_GAMMA);
+        return Math.max(0, Math.min(NR_BUCKETS - 1, bucket));
+    }
+
+    public static double getLowerBound(int bucket) {
+        return MIN_VALUE * Math.pow(GAMMA, bucket - 1);
+    }
+
+    public static double getUpperBound(int bucket) {
+        return MIN_VALUE * Math.pow(GAMMA, bucket);
+    }
+
+    /**
+     * Aggregates the sketch into a histogram of coarser bins, each spanning bucketsPerBin consecutive buckets. Every row
+     * holds {lowerBound, upperBound, count}; the first row holds the values below MIN_VALUE and empty bins are skipped.
+     *
+     * @param bucketsPerBin
+     * @return histogram
+     */
+    public List<double[]> getHistogram(int bucketsPerBin) {
+        List<double[]> histogram = new ArrayList<>();
+        if (zeroCount > 0) {
+            histogram.add(new double[]{0.0, MIN_VALUE, zeroCount});
+        }
+        if (lowestBucket > highestBucket) {
+            return histogram;
+        }
+        int firstBin = lowestBucket / bucketsPerBin;
+        int lastBin = highestBucket / bucketsPerBin;
+        for (int bin = firstBin; bin <= lastBin; bin++) {
+            int from = bin * bucketsPerBin;
+            int to = Math.min(NR_BUCKETS, from + bucketsPerBin);
+            long binCount = 0;
+            for (int i = from; i < to; i++) {
+                binCount += counts[i];
+            }
+            if (binCount > 0) {
+                histogram.add(new double[]{getLowerBound(from), getUpperBound(to - 1), binCount});
+            }
+        }
+        return histogram;
+    }
+}
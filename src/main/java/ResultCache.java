@@ -0,0 +1,125 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+
+public class ResultCache {
+    // change whenever the content or format of the cached rows or logs changes, so stale entries are never served
+    public static final String CACHE_VERSION = "4";
+    public static final String LOG_FILE = "log.csv";
+    public static final String INDEX_FILE = "index.idx";
+
+    public Path directory;
+
+    public ResultCache(String outputDirectory) throws Exception {
+        this.directory = Paths.get(outputDirectory + "\\Cache");
+        Files.createDirectories(this.directory);
+    }
+
+    /**
+     * Computes the cache key of a segment: a SHA-256 hash over the mining parameters, the segment name and the content
+     * of every input file the segment is read from (in path order)
+     *
+     * @param segment
+     * @param files
+     * @param minBatchSize
+     * @param nonFIFO
+     * @param bucketWidth
+     * @return key
+     * @throws Exception
+     */
+    public static String computeKey(String segment, List<Path> files, int minBatchSize, String nonFIFO, long bucketWidth) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update((CACHE_VERSION + "\n" + segment + "\n" + minBatchSize + "\n" + nonFIFO + "\n" + bucketWidth + "\n").getBytes(StandardCharsets.UTF_8));
+        List<Path> sortedFiles = new ArrayList<>(files);
+        Collections.sort(sortedFiles);
+        byte[] buffer = new byte[1 << 16];
+        for (Path file : sortedFiles) {
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            // separate files, so moving rows from one file to the next changes the key
+            digest.update((byte) 0);
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Loads the statistics rows of a cached segment
+     *
+     * @param key
+     * @param name
+     * @param tables
+     * @return result, or null if the segment is not (completely) cached
+     * @throws Exception
+     */
+    public SegmentResult load(String key, String name, Collection<String> tables) throws Exception {
+        Path entry = directory.resolve(key);
+        if (!Files.isDirectory(entry) || !Files.exists(entry.resolve(LOG_FILE)) || !Files.exists(entry.resolve(INDEX_FILE))) {
+            return null;
+        }
+        return SegmentResult.read(entry, name, tables);
+    }
+
+    /**
+     * Copies the cached annotated log and batch interval index of a segment to their place in the output directory
+     *
+     * @param key
+     * @param logPathName
+     * @param indexPathName
+     * @throws Exception
+     */
+    public void restoreOutputs(String key, String logPathName, String indexPathName) throws Exception {
+        Files.copy(directory.resolve(key).resolve(LOG_FILE), Paths.get(logPathName), StandardCopyOption.REPLACE_EXISTING);
+        Path index = Paths.get(indexPathName);
+        if (index.getParent() != null) {
+            Files.createDirectories(index.getParent());
+        }
+        Files.copy(directory.resolve(key).resolve(INDEX_FILE), index, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Stores the statistics rows, annotated log and batch interval index of a mined segment. The entry is written to a temporary directory
+     * first and then renamed, so an interrupted run never leaves a partial entry behind.
+     *
+     * @param key
+     * @param result
+     * @param tables
+     * @param logPathName
+     * @param indexPathName
+     * @throws Exception
+     */
+    public void store(String key, SegmentResult result, Collection<String> tables, String logPathName, String indexPathName) throws Exception {
+        Path entry = directory.resolve(key);
+        if (Files.isDirectory(entry)) {
+            return;
+        }
+        Path temporary = Files.createTempDirectory(directory, key + ".tmp");
+        result.write(temporary, tables);
+        Files.copy(Paths.get(logPathName), temporary.resolve(LOG_FILE));
+        Files.copy(Paths.get(indexPathName), temporary.resolve(INDEX_FILE));
+        try {
+            Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // another run stored the same entry in the meantime
+            deleteDirectory(temporary);
+        }
+    }
+
+    public static void deleteDirectory(Path directory) throws Exception {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.concurrent.ForkJoinPool;
+
+public class RunningStatistics {
+    // number of values, their mean and the sum of squared deviations from the mean (M2)
+    public long count;
+    public double mean;
+    public double m2;
+
+    public RunningStatistics() {
+        this.count = 0;
+        this.mean = 0.0;
+        this.m2 = 0.0;
+    }
+
+    public RunningStatistics(long count, double mean, double m2) {
+        this.count = count;
+        this.mean = mean;
+        this.m2 = m2;
+    }
+
+    /**
+     * Summarizes an array of values, splitting large arrays into chunks that are accumulated in parallel on the
+     * common fork-join pool and merged afterwards
+     *
+     * @param A
+     * @return statistics
+     */
+    public static RunningStatistics of(double[] A) {
+        if (A.length <= StatisticsTask.THRESHOLD) {
+            return StatisticsTask.accumulate(A, 0, A.length);
+        }
+        return ForkJoinPool.commonPool().invoke(new StatisticsTask(A, 0, A.length));
+    }
+
+    /**
+     * Adds a single value (Welford's update)
+     *
+     * @param value
+     */
+    public void add(double value) {
+        this.count++;
+        double delta = value - this.mean;
+        this.mean += delta / this.count;
+        this.m2 += delta * (value - this.mean);
+    }
+
+    /**
+     * Merges the values summarized by another accumulator into this one (Chan's parallel update)
+     *
+     * @param other
+     * @return this
+     */
+    public RunningStatistics merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (this.count == 0) {
+            this.count = other.count;
+            this.mean = other.mean;
+            this.m2 = other.m2;
+            return this;
+        }
+        long count = this.count + other.count;
+        double delta = other.mean - this.mean;
+        this.mean += delta * other.count / count;
+        this.m2 += other.m2 + delta * delta * this.count * other.count / count;
+        this.count = count;
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean, or NaN if no values were added (as for calculateMean on an empty array)
+     *
+     * @return mean
+     */
+    public double getMean() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return mean;
+    }
+
+    /**
+     * Returns the population standard deviation, or NaN if no values were added
+     *
+     * @return standardDeviation
+     */
+    public double getStandardDeviation() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return Math.sqrt(m2 / count);
+    }
+}
@@ -0,0 +1,156 @@
+/* E.L. Klijn
+ * Performance Mining for Batch Processing Using the Performance Spectrum
+ */
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class ScalabilityBenchmark {
+    public static final String HEADER = "rowsPerSegment,segments,rows,listMs,ingestMs,detectMs,outputMs,statisticsMs,cacheMs,totalMs,rowsPerSecond,peakHeapMB,peakRssMB";
+
+    /**
+     * Mines all segments of an input directory the way BatchMiner.main does (segment scheduler, result cache and
+     * checkpoint), timing the listing of the segments and every stage of BatchMiner.processSegment: reading the
+     * observations, sorting and detecting batches, writing the log and index, calculating the statistics and
+     * storing the results in the cache. The statistics tables are counted as output. The cache of an earlier run is
+     * removed first, so every segment is mined. Segments are mined concurrently, so the stage times (summed over all
+     * segments) can add up to more than the total time.
+     *
+     * @param inputDirectory
+     * @param outputDirectory
+     * @param minBatchSize
+     * @param nonFIFO
+     * @return measurements, without the first column (rows per segment)
+     * @throws Exception
+     */
+    public static String measure(String inputDirectory, String outputDirectory, int minBatchSize, String nonFIFO) throws Exception {
+        Files.createDirectories(Paths.get(outputDirectory + "\\Statistics"));
+        Files.createDirectories(Paths.get(outputDirectory + "\\Logs"));
+        Path cacheDirectory = Paths.get(outputDirectory + "\\Cache");
+        if (Files.exists(cacheDirectory)) {
+            Checkpoint.deleteRecursively(cacheDirectory);
+        }
+        StageTimer timer = new StageTimer();
+        long start = System.nanoTime();
+        Map<String, List<Path>> segmentFiles = BatchMiner.listSegmentFiles(inputDirectory);
+        List<String> allSegments = new ArrayList<>(segmentFiles.keySet());
+        Map<String, Long> footprints = SegmentScheduler.estimateFootprints(segmentFiles);
+        long listTime = System.nanoTime() - start;
+
+        SegmentScheduler scheduler = new SegmentScheduler(Runtime.getRuntime().maxMemory() / 2, Runtime.getRuntime().availableProcessors(), footprints);
+        ResultCache cache = new ResultCache(outputDirectory);
+        String parameters = inputDirectory + "," + minBatchSize + "," + nonFIFO + "," + BatchMiner.DEFAULT_BUCKET_WIDTH + "," + ResultCache.CACHE_VERSION;
+        // a checkpoint of an interrupted measurement would skip segments as well
+        new Checkpoint(outputDirectory, parameters).delete();
+        Checkpoint checkpoint = new Checkpoint(outputDirectory, parameters);
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < allSegments.size(); i++) {
+            indices.add(i);
+        }
+        List<SegmentResult> results = new ArrayList<>(BatchMiner.mineSegments(segmentFiles, allSegments, indices, minBatchSize, nonFIFO, BatchMiner.DEFAULT_BUCKET_WIDTH, outputDirectory, cache, checkpoint, null, scheduler, timer).values());
+
+        long stageStart = System.nanoTime();
+        BatchMiner.printStatistics(results, outputDirectory);
+        timer.stop(StageTimer.OUTPUT, stageStart);
+        checkpoint.delete();
+        long total = System.nanoTime() - start;
+
+        StringBuilder row = new StringBuilder(allSegments.size() + "," + timer.getRows() + "," + listTime / 1000000);
+        for (int j = 0; j < StageTimer.NR_STAGES; j++) {
+            row.append("," + timer.getMillis(j));
+        }
+        row.append("," + total / 1000000 + "," + (long) (timer.getRows() / (total / 1e9)) + "," + getPeakHeap() / (1 << 20) + "," + getPeakRss());
+        return row.toString();
+    }
+
+    // sum of the peak usage of all heap memory pools, in bytes
+    public static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    // peak resident set size in MB (VmHWM, Linux only), or "-" if it is not available
+    public static String getPeakRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    return String.valueOf(Long.parseLong(line.substring(6).trim().split("\\s+")[0]) / 1024);
+                }
+            }
+        } catch (IOException e) {
+            // not Linux
+        }
+        return "-";
+    }
+
+    /**
+     * Main method: generates synthetic PSM exports of growing size and mines each of them in a fresh JVM (so peak
+     * heap and RSS are measured per size), appending one row of measurements per size to the results file. Exports
+     * that already exist in the work directory are reused.
+     *
+     * Arguments: workDirectory resultsFile rowsPerSegment (comma separated sizes, e.g. 10000,100000,1000000)
+     * nrSegments filesPerSegment minBatchSize nonFIFO(y/n) [JVM options for the measured runs, e.g. -Xmx8g]
+     *
+     * Internally, the measured runs are started as: measure inputDirectory outputDirectory minBatchSize nonFIFO
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String args[]) throws Exception {
+        if (args[0].equals("measure")) {
+            System.out.println(measure(args[1], args[2], Integer.parseInt(args[3]), args[4]));
+            return;
+        }
+        String workDirectory = args[0];
+        Path resultsFile = Paths.get(args[1]);
+        String[] sizes = args[2].split(",");
+        int nrSegments = Integer.parseInt(args[3]);
+        int filesPerSegment = Integer.parseInt(args[4]);
+        int minBatchSize = Integer.parseInt(args[5]);
+        String nonFIFO = args[6];
+        List<String> jvmOptions = Arrays.asList(args).subList(7, args.length);
+
+        if (!Files.exists(resultsFile)) {
+            Files.write(resultsFile, Collections.singletonList(HEADER), StandardCharsets.UTF_8);
+        }
+        for (String size : sizes) {
+            int rowsPerSegment = Integer.parseInt(size.trim());
+            Path inputDirectory = Paths.get(workDirectory, "input-" + rowsPerSegment);
+            if (!Files.exists(inputDirectory)) {
+                System.out.println("Generating " + nrSegments + " segments of " + rowsPerSegment + " rows...");
+                // half of the cases batched, in batches of 2 minBatchSize cases on average; rows up to an hour out of order
+                new SyntheticLogGenerator(nrSegments, rowsPerSegment, filesPerSegment, 0.5, 2.0 * minBatchSize, 3600000L, 1).generate(inputDirectory.toString());
+            }
+            String outputDirectory = Paths.get(workDirectory, "output-" + rowsPerSegment).toString();
+
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(jvmOptions);
+            command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), "ScalabilityBenchmark", "measure", inputDirectory.toString(), outputDirectory, String.valueOf(minBatchSize), nonFIFO));
+            System.out.println("Mining " + nrSegments + " segments of " + rowsPerSegment + " rows...");
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String measurements = null;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    measurements = line; //the measurements are printed last
+                }
+            }
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException("Measured run for " + rowsPerSegment + " rows per segment failed: " + measurements);
+            }
+            System.out.println(HEADER + "\n" + rowsPerSegment + "," + measurements);
+            Files.write(resultsFile, Collections.singletonList(rowsPerSegment + "," + measurements), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+    }
+}
@@ -44,6 +44,14 @@ public class Segment {
     public double[] nonBatchedCaseWaitingTimes;
     public double[] nonBatchedCaseInterArrivalTimes;
 
+    //waiting time distributions (fixed-memory quantile sketches, in hours)
+    public QuantileSketch allCaseWaitingTimeSketch;
+    public QuantileSketch batchedCaseWaitingTimeSketch;
+    public QuantileSketch nonBatchedCaseWaitingTimeSketch;
+
+    //rows of the load profile, calculated while mining (see BatchMiner.calculateLoadProfile)
+    public List<String> loadProfile;
+
 
     public Segment(String name, List<Trace> traces, List<Batch> batches, double[] allCaseInterArrivalTimes) {
         this.name = name;
@@ -51,6 +59,7 @@ public class Segment {
         this.batches = batches;
         this.totalNrTraces = traces.size();
         this.allCaseInterArrivalTimes = allCaseInterArrivalTimes;
+        this.loadProfile = new ArrayList<>();
 
         this.segmentStart = traces.get(0).getStart();
         for (int i = 0; i < traces.size(); i++) {
@@ -82,9 +91,18 @@ public class Segment {
             }
         }
 
+        this.allCaseWaitingTimeSketch = new QuantileSketch();
+        this.batchedCaseWaitingTimeSketch = new QuantileSketch();
+        this.nonBatchedCaseWaitingTimeSketch = new QuantileSketch();
         this.allCaseWaitingTimes = new double[traces.size()];
         for (int i = 0; i < allCaseWaitingTimes.length; i++) {
             this.allCaseWaitingTimes[i] = 1.0 * traces.get(i).getDuration() / 3600000;
+            this.allCaseWaitingTimeSketch.add(this.allCaseWaitingTimes[i]);
+            if (traces.get(i).getBatched()) {
+                this.batchedCaseWaitingTimeSketch.add(this.allCaseWaitingTimes[i]);
+            } else {
+                this.nonBatchedCaseWaitingTimeSketch.add(this.allCaseWaitingTimes[i]);
+            }
         }
     }
 
@@ -117,6 +135,14 @@ public class Segment {
         return batches;
     }
 
+    public List<String> getLoadProfile() {
+        return loadProfile;
+    }
+
+    public void setLoadProfile(List<String> loadProfile) {
+        this.loadProfile = loadProfile;
+    }
+
     public int getNrTracesInBatch() {
         return nrTracesInBatch;
     }
@@ -188,6 +214,23 @@ public class Segment {
         return allCaseInterArrivalTimes;
     }
 
+    /**
+     * ****************************************************************
+     * ************ METHODS FOR WAITING TIME DISTRIBUTIONS ************
+     * ****************************************************************
+     */
+    public QuantileSketch getAllCaseWaitingTimeSketch() {
+        return allCaseWaitingTimeSketch;
+    }
+
+    public QuantileSketch getBatchedCaseWaitingTimeSketch() {
+        return batchedCaseWaitingTimeSketch;
+    }
+
+    public QuantileSketch getNonBatchedCaseWaitingTimeSketch() {
+        return nonBatchedCaseWaitingTimeSketch;
+    }
+
     /**
      * ****************************************************************
      * ********* METHODS FOR INTRA-BATCH INTERARRIVAL TIMES ***********
@@ -206,12 +249,27 @@ public class Segment {
      * *********** METHODS FOR BATCHED TRACES AND STATISTICS***********
      * ****************************************************************
      */
+    /**
+     * Splits the traces into batched and non-batched traces and calculates their waiting and inter-arrival times
+     */
+    public void partitionTraces() {
+        if (batches.size() > 0) {
+            setBatchedTraces(batches);
+            if (batchedTraces.size() < traces.size()) {
+                setNonBatchedTraces(batchedTraces, traces);
+            }
+        } else {
+            setNonBatchedTracesNoBatches(traces);
+        }
+    }
+
     public void setBatchedTraces(List<Batch> batches) {
         this.batchedTraces = new ArrayList<>();
         for (int i = 0; i < batches.size(); i++) {
-            for (int j = 0; j < batches.get(i).getTraces().size(); j++) {
-                batches.get(i).getTraces().get(j).setBatched(true);
-                this.batchedTraces.add(batches.get(i).getTraces().get(j));
+            List<Trace> tracesInBatch = batches.get(i).getTraces();
+            for (int j = 0; j < tracesInBatch.size(); j++) {
+                tracesInBatch.get(j).setBatched(true);
+                this.batchedTraces.add(tracesInBatch.get(j));
             }
         }
         this.batchedCaseWaitingTimes = new double[this.batchedTraces.size()];
@@ -0,0 +1,10 @@
+public class SegmentBatches {
+    // batches of a segment, reduced to the global case indices of the CaseDictionary
+    public String name;
+    public String startEvent;
+    public String endEvent;
+    public int[] cases; //sorted indices of all cases observed in the segment
+    public long[] batchOfCase; //sorted (case index << 32 | batch number) of all batched cases
+    public int[][] caseSets; //sorted case indices per batch
+    public long[] signatures; //hash of the sorted case set per batch
+}
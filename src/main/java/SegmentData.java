@@ -0,0 +1,38 @@
+import java.util.List;
+
+public class SegmentData {
+    // observations of a segment in columnar form, as parsed from the PSM export
+    public String name;
+    public String[] caseIDs;
+    public long[] starts;
+    public long[] durations;
+    public long estimatedBytes;
+
+    public SegmentData(String name, List<Trace> traces) {
+        this.name = name;
+        this.caseIDs = new String[traces.size()];
+        this.starts = new long[traces.size()];
+        this.durations = new long[traces.size()];
+        // array headers and primitive columns, plus a String object and its characters per case identifier
+        this.estimatedBytes = 3 * 16 + 16L * traces.size();
+        for (int i = 0; i < traces.size(); i++) {
+            Trace trace = traces.get(i);
+            this.caseIDs[i] = trace.getCaseID();
+            this.starts[i] = trace.getStart();
+            this.durations[i] = trace.getDuration();
+            this.estimatedBytes += 8 + 40 + 2L * trace.getCaseID().length();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return caseIDs.length;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+}
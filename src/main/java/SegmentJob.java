@@ -0,0 +1,10 @@
+public interface SegmentJob {
+    /**
+     * Mines the segment at the given position in the segment list
+     *
+     * @param index
+     * @return result, or null if the segment has no observations
+     * @throws Exception
+     */
+    SegmentResult process(int index) throws Exception;
+}
@@ -0,0 +1,112 @@
+import java.util.*;
+
+public class SegmentPreview {
+    // half width of a 95% confidence interval in standard errors
+    public static final double Z = 1.96;
+
+    public String name;
+    public int minBatchSize;
+    public int maxSampledGroups;
+    // end time groups are sampled with probability 2^-level
+    public int level;
+    public long nrTraces;
+    // number of cases per sampled end time (or rounded end time)
+    public Map<Long, int[]> groups;
+
+    public SegmentPreview(String name, int minBatchSize, int maxSampledGroups) {
+        this.name = name;
+        this.minBatchSize = minBatchSize;
+        this.maxSampledGroups = maxSampledGroups;
+        this.level = 0;
+        this.nrTraces = 0;
+        this.groups = new HashMap<>();
+    }
+
+    /**
+     * Adds a case by the end time it is batched on. Batches are groups of cases with the same end time, so the sample
+     * keeps or drops whole groups: a group is kept if the hash of its end time has level trailing zero bits. When more
+     * than maxSampledGroups groups are kept, the level is raised, halving the sampling rate.
+     *
+     * @param endKey end time, or rounded end time for non-FIFO
+     */
+    public void add(long endKey) {
+        nrTraces++;
+        if (!isSampled(endKey, level)) {
+            return;
+        }
+        int[] count = groups.get(endKey);
+        if (count == null) {
+            count = new int[1];
+            groups.put(endKey, count);
+        }
+        count[0]++;
+        while (groups.size() > maxSampledGroups) {
+            level++;
+            groups.keySet().removeIf(key -> !isSampled(key, level));
+        }
+    }
+
+    public static boolean isSampled(long key, int level) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ (hash >>> 32)) * 0xD6E8FEB86659FD93L;
+        hash ^= hash >>> 32;
+        return level == 0 || Long.numberOfTrailingZeros(hash) >= level;
+    }
+
+    public double getSampleRate() {
+        return Math.pow(2, -level);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Estimates the batch percentage (BF), the number of batches (m) and the mean batch size (mu_k) from the sampled
+     * groups, each with the half width of its 95% confidence interval. The groups are a Bernoulli sample with rate p, so
+     * m is scaled by 1/p, while BF and mu_k are ratio estimators with linearized variances. All errors are zero when
+     * every group is sampled.
+     *
+     * @return row of segment_preview.csv
+     */
+    public String formatEstimates() {
+        double p = getSampleRate();
+        long sampledCases = 0;
+        long batchedCases = 0;
+        int sampledBatches = 0;
+        for (int[] count : groups.values()) {
+            sampledCases += count[0];
+            if (count[0] >= minBatchSize) {
+                batchedCases += count[0];
+                sampledBatches++;
+            }
+        }
+        double batchFraction = sampledCases > 0 ? 1.0 * batchedCases / sampledCases : Double.NaN;
+        double meanBatchSize = sampledBatches > 0 ? 1.0 * batchedCases / sampledBatches : Double.NaN;
+        double batchFractionResiduals = 0;
+        double batchSizeResiduals = 0;
+        for (int[] count : groups.values()) {
+            boolean batch = count[0] >= minBatchSize;
+            double batched = batch ? count[0] : 0;
+            batchFractionResiduals += Math.pow(batched - batchFraction * count[0], 2);
+            if (batch) {
+                batchSizeResiduals += Math.pow(batched - meanBatchSize, 2);
+            }
+        }
+
+        StringBuilder row = new StringBuilder();
+        row.append(name + "," + nrTraces + "," + p + "," + sampledCases + ",");
+        if (sampledCases > 0) {
+            row.append(100.0 * batchFraction + "," + 100.0 * Z * Math.sqrt((1 - p) * batchFractionResiduals) / sampledCases + ",");
+        } else {
+            row.append("-,-,");
+        }
+        row.append(sampledBatches / p + "," + Z * Math.sqrt((1 - p) * sampledBatches) / p + ",");
+        if (sampledBatches > 0) {
+            row.append(meanBatchSize + "," + Z * Math.sqrt((1 - p) * batchSizeResiduals) / sampledBatches);
+        } else {
+            row.append("-,-");
+        }
+        return row.toString();
+    }
+}
@@ -0,0 +1,87 @@
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SegmentResult {
+    public String name;
+    // rows of every statistics table this segment contributes to, keyed by table file name
+    public Map<String, List<String>> rows;
+
+    public SegmentResult(String name) {
+        this.name = name;
+        this.rows = new LinkedHashMap<>();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void addRow(String table, String row) {
+        List<String> tableRows = rows.get(table);
+        if (tableRows == null) {
+            tableRows = new ArrayList<>();
+            rows.put(table, tableRows);
+        }
+        tableRows.add(row);
+    }
+
+    public void addRows(String table, List<String> newRows) {
+        for (int i = 0; i < newRows.size(); i++) {
+            addRow(table, newRows.get(i));
+        }
+    }
+
+    public List<String> getRows(String table) {
+        List<String> tableRows = rows.get(table);
+        if (tableRows == null) {
+            return Collections.emptyList();
+        }
+        return tableRows;
+    }
+
+    /**
+     * Writes the rows of the given tables to one file per table in a directory, forcing them to disk
+     *
+     * @param directory
+     * @param tables
+     * @throws Exception
+     */
+    public void write(Path directory, Collection<String> tables) throws Exception {
+        for (String table : tables) {
+            Path file = directory.resolve(table);
+            Files.write(file, getRows(table), StandardCharsets.UTF_8);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of the given tables written by write
+     *
+     * @param directory
+     * @param name
+     * @param tables
+     * @return result, or null if a table is missing
+     * @throws Exception
+     */
+    public static SegmentResult read(Path directory, String name, Collection<String> tables) throws Exception {
+        SegmentResult result = new SegmentResult(name);
+        for (String table : tables) {
+            Path file = directory.resolve(table);
+            if (!Files.exists(file)) {
+                return null;
+            }
+            result.addRows(table, Files.readAllLines(file, StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+}
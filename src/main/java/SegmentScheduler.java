@@ -0,0 +1,126 @@
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class SegmentScheduler {
+    // rough ratio of the heap needed to mine a segment (traces, batches, statistics) to the size of its input files
+    public static final long FOOTPRINT_PER_INPUT_BYTE = 8;
+
+    public long memoryBudget;
+    public int nrThreads;
+    // estimated footprint of every segment, in bytes
+    public Map<String, Long> footprints;
+
+    public SegmentScheduler(long memoryBudget, int nrThreads, Map<String, Long> footprints) {
+        this.memoryBudget = memoryBudget;
+        this.nrThreads = nrThreads;
+        this.footprints = footprints;
+    }
+
+    /**
+     * Estimates the footprint of every segment from the total size of its CSV files
+     *
+     * @param segmentFiles input files by segment, see BatchMiner.listSegmentFiles
+     * @return footprint in bytes by segment, in the order of segmentFiles
+     * @throws Exception
+     */
+    public static Map<String, Long> estimateFootprints(Map<String, List<Path>> segmentFiles) throws Exception {
+        Map<String, Long> footprints = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Path>> segment : segmentFiles.entrySet()) {
+            long size = 0;
+            for (Path file : segment.getValue()) {
+                size += Files.size(file);
+            }
+            footprints.put(segment.getKey(), FOOTPRINT_PER_INPUT_BYTE * size);
+        }
+        return footprints;
+    }
+
+    public long getFootprint(String segment) {
+        return footprints.getOrDefault(segment, 0L);
+    }
+
+    /**
+     * Mines segments concurrently within the memory budget. Segments are started largest first; when the largest
+     * waiting segment does not fit in the remaining budget, smaller ones that do fit are started instead, so all
+     * threads stay busy. A segment that exceeds the budget on its own is mined alone, once all other segments have
+     * finished, so it has the whole heap to itself.
+     *
+     * @param allSegments
+     * @param indices positions in the segment list of the segments to mine
+     * @param job mines the segment at a position, returning null if it has no observations
+     * @return results by position, in the order of indices
+     * @throws Exception
+     */
+    public Map<Integer, SegmentResult> run(List<String> allSegments, List<Integer> indices, SegmentJob job) throws Exception {
+        List<Integer> pending = new ArrayList<>(indices);
+        pending.sort(Comparator.comparingLong((Integer i) -> getFootprint(allSegments.get(i))).reversed());
+        Map<Integer, SegmentResult> finished = new HashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(nrThreads);
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<Integer>, Long> reservations = new HashMap<>();
+        long reserved = 0;
+        boolean exclusive = false;
+        try {
+            while (!pending.isEmpty() || !reservations.isEmpty()) {
+                while (!exclusive && reservations.size() < nrThreads && !pending.isEmpty()) {
+                    Integer next = null;
+                    long footprint = 0;
+                    for (Integer i : pending) {
+                        footprint = getFootprint(allSegments.get(i));
+                        if (footprint > memoryBudget) {
+                            if (reservations.isEmpty()) {
+                                next = i;
+                                exclusive = true;
+                            }
+                            // otherwise wait until the running segments finish; none is started before it
+                            break;
+                        }
+                        if (reserved + footprint <= memoryBudget) {
+                            next = i;
+                            break;
+                        }
+                    }
+                    if (next == null) {
+                        break;
+                    }
+                    pending.remove(next);
+                    if (exclusive) {
+                        System.out.println("Mining " + allSegments.get(next) + " alone, its estimated footprint exceeds the memory budget...");
+                    }
+                    final int index = next;
+                    reservations.put(completion.submit(() -> {
+                        SegmentResult result = job.process(index);
+                        synchronized (finished) {
+                            finished.put(index, result);
+                        }
+                        return index;
+                    }), footprint);
+                    reserved += footprint;
+                }
+
+                Future<Integer> done = completion.take();
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+                reserved -= reservations.remove(done);
+                exclusive = false;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<Integer, SegmentResult> results = new LinkedHashMap<>();
+        for (int i : indices) {
+            if (finished.get(i) != null) {
+                results.put(i, finished.get(i));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,76 @@
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SegmentStore {
+    // input files by segment, see BatchMiner.listSegmentFiles
+    public Map<String, List<Path>> segmentFiles;
+    public long memoryBudget; //bytes
+    public long usedBytes;
+    // parsed segments in least-recently-used order
+    public LinkedHashMap<String, SegmentData> segments;
+
+    public SegmentStore(Map<String, List<Path>> segmentFiles, long memoryBudget) {
+        this.segmentFiles = segmentFiles;
+        this.memoryBudget = memoryBudget;
+        this.segments = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the parsed observations of a segment, reading them from its input files if they are not resident.
+     * Least recently used segments are evicted until the estimated size of all resident segments fits the budget; a
+     * single segment larger than the budget is returned but not kept.
+     *
+     * @param name
+     * @return data, or null if the segment has no observations
+     * @throws Exception
+     */
+    public SegmentData get(String name) throws Exception {
+        synchronized (this) {
+            SegmentData data = segments.get(name);
+            if (data != null) {
+                return data;
+            }
+        }
+        // parse outside the lock, so requests for resident segments are not blocked by a slow read
+        List<Path> files = segmentFiles.get(name);
+        if (files == null) {
+            return null;
+        }
+        List<Trace> traces = BatchMiner.filterSegments(files, name);
+        if (traces.isEmpty()) {
+            return null;
+        }
+        SegmentData data = new SegmentData(name, traces);
+        synchronized (this) {
+            SegmentData resident = segments.get(name);
+            if (resident != null) {
+                return resident;
+            }
+            if (data.getEstimatedBytes() > memoryBudget) {
+                return data;
+            }
+            segments.put(name, data);
+            usedBytes += data.getEstimatedBytes();
+            Iterator<Map.Entry<String, SegmentData>> iterator = segments.entrySet().iterator();
+            while (usedBytes > memoryBudget && iterator.hasNext()) {
+                SegmentData eldest = iterator.next().getValue();
+                if (eldest != data) {
+                    usedBytes -= eldest.getEstimatedBytes();
+                    iterator.remove();
+                }
+            }
+        }
+        return data;
+    }
+
+    public synchronized int getNrResidentSegments() {
+        return segments.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+}
@@ -0,0 +1,178 @@
+/* E.L. Klijn
+ * Performance Mining for Batch Processing Using the Performance Spectrum
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class ShardedBatchMiner {
+    public static final String DONE_FILE = "DONE";
+
+    /**
+     * Returns the shard a segment is assigned to; String.hashCode is specified by the language, so every worker
+     * process computes the same partitioning
+     *
+     * @param segment
+     * @param shardCount
+     * @return shard
+     */
+    public static int getShard(String segment, int shardCount) {
+        return Math.floorMod(segment.hashCode(), shardCount);
+    }
+
+    public static String getShardDirectory(String sharedDirectory, int shard) {
+        return sharedDirectory + "\\shard-" + shard;
+    }
+
+    /**
+     * Mines all segments assigned to one shard. The annotated logs and the rows of the statistics tables (prefixed by
+     * the position of their segment in the segment list, which is sorted so every machine numbers the segments the
+     * same) are written to the shard directory, after which a DONE marker is created. An interrupted worker resumes from its checkpoint when it is restarted.
+     *
+     * @param shard
+     * @param shardCount
+     * @param inputDirectory
+     * @param minBatchSize
+     * @param nonFIFO
+     * @param sharedDirectory
+     * @param useCache
+     * @param bucketWidth of the load profile, in milliseconds
+     * @throws Exception
+     */
+    public static void runWorker(int shard, int shardCount, String inputDirectory, int minBatchSize, String nonFIFO, String sharedDirectory, String useCache, long bucketWidth) throws Exception {
+        BatchMiner.checkBucketWidth(bucketWidth);
+        String shardDirectory = getShardDirectory(sharedDirectory, shard);
+        Files.createDirectories(Paths.get(shardDirectory + "\\Logs"));
+        Files.deleteIfExists(Paths.get(shardDirectory + "\\" + DONE_FILE));
+
+        Map<String, List<Path>> segmentFiles = BatchMiner.listSegmentFiles(inputDirectory);
+        List<String> allSegments = new ArrayList<>(segmentFiles.keySet());
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < allSegments.size(); i++) {
+            if (getShard(allSegments.get(i), shardCount) == shard) {
+                indices.add(i);
+            }
+        }
+        System.out.println("Shard " + shard + " of " + shardCount + ": " + indices.size() + " of " + allSegments.size() + " segments...");
+
+        ResultCache cache = null;
+        if (useCache.equals("y")) {
+            // shared by all workers; entries are renamed into place, so concurrent workers never see partial entries
+            cache = new ResultCache(sharedDirectory);
+        }
+        Checkpoint checkpoint = new Checkpoint(shardDirectory, inputDirectory + "," + minBatchSize + "," + nonFIFO + "," + bucketWidth + "," + ResultCache.CACHE_VERSION + "," + shard + "/" + shardCount);
+        Map<Integer, SegmentResult> results = BatchMiner.mineSegments(segmentFiles, allSegments, indices, minBatchSize, nonFIFO, bucketWidth, shardDirectory, cache, checkpoint, null, null, null);
+
+        for (String table : BatchMiner.TABLE_HEADERS.keySet()) {
+            List<String> rows = new ArrayList<>();
+            for (Map.Entry<Integer, SegmentResult> result : results.entrySet()) {
+                for (String row : result.getValue().getRows(table)) {
+                    rows.add(result.getKey() + "," + row);
+                }
+            }
+            Files.write(Paths.get(shardDirectory + "\\" + table), rows, StandardCharsets.UTF_8);
+        }
+        writeAtomically(Paths.get(shardDirectory + "\\" + DONE_FILE), shardCount + "," + minBatchSize + "," + nonFIFO + "," + bucketWidth + "," + allSegments.size());
+        checkpoint.delete();
+    }
+
+    /**
+     * Merges the partial results of all shards into the statistics tables and logs of the output directory, in the
+     * order of the segment list, so the result equals that of a single-process run. The annotated log and index of a
+     * segment are copied from the shard it is assigned to only, so stale files left in other shard directories by
+     * earlier runs are ignored, and a merge can be repeated.
+     *
+     * @param shardCount
+     * @param sharedDirectory
+     * @param outputDirectory
+     * @throws Exception
+     */
+    public static void merge(int shardCount, String sharedDirectory, String outputDirectory) throws Exception {
+        String parameters = null;
+        List<Integer> missing = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            Path done = Paths.get(getShardDirectory(sharedDirectory, shard) + "\\" + DONE_FILE);
+            if (!Files.exists(done)) {
+                missing.add(shard);
+                continue;
+            }
+            String shardParameters = new String(Files.readAllBytes(done), StandardCharsets.UTF_8);
+            if (parameters != null && !parameters.equals(shardParameters)) {
+                throw new IllegalStateException("Shard " + shard + " was mined with other parameters: " + shardParameters + " instead of " + parameters);
+            }
+            parameters = shardParameters;
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Shards " + missing + " have not completed");
+        }
+        if (!parameters.startsWith(shardCount + ",")) {
+            throw new IllegalStateException("Shards were mined with other shard count: " + parameters);
+        }
+
+        // rows by position of their segment in the segment list, in the order they were written within a segment
+        TreeMap<Integer, SegmentResult> results = new TreeMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            String shardDirectory = getShardDirectory(sharedDirectory, shard);
+            for (String table : BatchMiner.TABLE_HEADERS.keySet()) {
+                for (String line : Files.readAllLines(Paths.get(shardDirectory + "\\" + table), StandardCharsets.UTF_8)) {
+                    int index = line.indexOf(",");
+                    int segmentIndex = Integer.parseInt(line.substring(0, index));
+                    String row = line.substring(index + 1);
+                    SegmentResult result = results.get(segmentIndex);
+                    if (result == null) {
+                        result = new SegmentResult(row.substring(0, row.indexOf(",")));
+                        results.put(segmentIndex, result);
+                    }
+                    result.addRow(table, row);
+                }
+            }
+        }
+        BatchMiner.printStatistics(new ArrayList<>(results.values()), outputDirectory);
+
+        for (SegmentResult result : results.values()) {
+            String shardDirectory = getShardDirectory(sharedDirectory, getShard(result.getName(), shardCount));
+            Path log = Paths.get(BatchMiner.getLogPathName(result.getName(), shardDirectory));
+            if (Files.exists(log)) {
+                Files.copy(log, Paths.get(BatchMiner.getLogPathName(result.getName(), outputDirectory)), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Path index = Paths.get(BatchIntervalIndex.getIndexPathName(result.getName(), shardDirectory));
+            if (Files.exists(index)) {
+                Path target = Paths.get(BatchIntervalIndex.getIndexPathName(result.getName(), outputDirectory));
+                Files.createDirectories(target.getParent());
+                Files.copy(index, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    public static void writeAtomically(Path file, String content) throws Exception {
+        Path temporary = Paths.get(file.toString() + ".tmp");
+        Files.write(temporary, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Main method: runs one worker of a sharded mining run, or merges the results of all workers. Workers can run on
+     * the same or different machines, as long as they share the shared directory; they coordinate through it only.
+     *
+     * Arguments:
+     *   worker shardIndex shardCount inputDirectory minBatchSize nonFIFO(y/n) sharedDirectory useCache(y/n) [bucketWidth]
+     *   merge shardCount sharedDirectory outputDirectory
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String args[]) throws Exception {
+        final long startTime = System.currentTimeMillis();
+        if (args[0].equals("worker")) {
+            runWorker(Integer.parseInt(args[1]), Integer.parseInt(args[2]), args[3], Integer.parseInt(args[4]), args[5], args[6], args[7], args.length > 8 ? Long.parseLong(args[8]) : BatchMiner.DEFAULT_BUCKET_WIDTH);
+        } else if (args[0].equals("merge")) {
+            System.out.println("Merging shards...");
+            merge(Integer.parseInt(args[1]), args[2], args[3]);
+        } else {
+            throw new IllegalArgumentException("Expected worker or merge, not " + args[0]);
+        }
+        System.out.println("\nTotal execution time: " + BatchMiner.getCurrentExecutionTimeString(startTime));
+    }
+}
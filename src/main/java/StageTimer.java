@@ -0,0 +1,46 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class StageTimer {
+    // stages of BatchMiner.processSegment, in the order they run
+    public static final int INGEST = 0; //reading the observations
+    public static final int DETECT = 1; //sorting, batch detection and load profile
+    public static final int OUTPUT = 2; //annotated log and batch interval index
+    public static final int STATISTICS = 3;
+    public static final int CACHE = 4; //looking up and storing cached results
+    public static final int NR_STAGES = 5;
+
+    // time per stage in nanoseconds and number of observations read, summed over all segments (also when mined concurrently)
+    public AtomicLongArray stageTimes;
+    public AtomicLong nrRows;
+
+    public StageTimer() {
+        this.stageTimes = new AtomicLongArray(NR_STAGES);
+        this.nrRows = new AtomicLong();
+    }
+
+    /**
+     * Adds the time since stageStart (from System.nanoTime) to a stage
+     *
+     * @param stage
+     * @param stageStart
+     * @return the current time, the start of the next stage
+     */
+    public long stop(int stage, long stageStart) {
+        long now = System.nanoTime();
+        stageTimes.addAndGet(stage, now - stageStart);
+        return now;
+    }
+
+    public void addRows(int rows) {
+        nrRows.addAndGet(rows);
+    }
+
+    public long getRows() {
+        return nrRows.get();
+    }
+
+    public long getMillis(int stage) {
+        return stageTimes.get(stage) / 1000000;
+    }
+}
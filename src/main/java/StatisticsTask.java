@@ -0,0 +1,45 @@
+import java.util.concurrent.RecursiveTask;
+
+public class StatisticsTask extends RecursiveTask<RunningStatistics> {
+    // chunks of at most this many values are accumulated sequentially
+    public static final int THRESHOLD = 1 << 14;
+
+    public double[] values;
+    public int from;
+    public int to;
+
+    public StatisticsTask(double[] values, int from, int to) {
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Sequentially accumulates the values in the range [from, to)
+     *
+     * @param values
+     * @param from
+     * @param to
+     * @return statistics
+     */
+    public static RunningStatistics accumulate(double[] values, int from, int to) {
+        RunningStatistics statistics = new RunningStatistics();
+        for (int i = from; i < to; i++) {
+            statistics.add(values[i]);
+        }
+        return statistics;
+    }
+
+    @Override
+    protected RunningStatistics compute() {
+        if (to - from <= THRESHOLD) {
+            return accumulate(values, from, to);
+        }
+        int middle = (from + to) >>> 1;
+        StatisticsTask left = new StatisticsTask(values, from, middle);
+        StatisticsTask right = new StatisticsTask(values, middle, to);
+        left.fork();
+        RunningStatistics rightStatistics = right.compute();
+        return left.join().merge(rightStatistics);
+    }
+}
@@ -0,0 +1,242 @@
+/* E.L. Klijn
+ * Performance Mining for Batch Processing Using the Performance Spectrum
+ */
+
+import com.opencsv.CSVParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class StreamingBatchMiner {
+    // the rounded end time of Trace.getEndRounded lies at most one minute before the actual end time
+    public static final long ROUNDING_SLACK = 60000L;
+
+    public int minBatchSize;
+    public boolean nonFIFO;
+    public long allowedLateness;
+    public StreamingListener listener;
+
+    public long maxEndSeen;
+    public long watermark;
+    public Map<String, StreamingSegment> segments;
+    public QuantileSketch sketch; //scratch space for batch percentiles
+
+    public StreamingBatchMiner(int minBatchSize, boolean nonFIFO, long allowedLateness, StreamingListener listener) {
+        this.minBatchSize = minBatchSize;
+        this.nonFIFO = nonFIFO;
+        this.allowedLateness = allowedLateness;
+        this.listener = listener;
+        this.maxEndSeen = Long.MIN_VALUE;
+        this.watermark = Long.MIN_VALUE;
+        this.segments = new LinkedHashMap<>();
+        this.sketch = new QuantileSketch();
+    }
+
+    /**
+     * Adds an observation to the open candidate group of its segment. Observations may arrive out of order as long as
+     * their end time lies at most allowedLateness before the latest end time seen; later observations are counted as
+     * late and dropped, since their group may already have been emitted.
+     *
+     * @param observation
+     * @throws Exception
+     */
+    public void accept(Observation observation) throws Exception {
+        StreamingSegment segment = segments.get(observation.getSegment());
+        if (segment == null) {
+            segment = new StreamingSegment(observation.getSegment());
+            segments.put(observation.getSegment(), segment);
+        }
+        long end = observation.getEnd();
+        if (watermark != Long.MIN_VALUE && end < watermark) {
+            segment.nrLateObservations++;
+            return;
+        }
+        Trace trace = observation.toTrace();
+        segment.add(trace, nonFIFO ? trace.getEndRounded() : end);
+        if (end > maxEndSeen) {
+            maxEndSeen = end;
+            advanceWatermark(maxEndSeen - allowedLateness);
+        }
+    }
+
+    /**
+     * Moves the watermark forward and emits all groups that can no longer receive observations
+     *
+     * @param newWatermark
+     * @throws Exception
+     */
+    public void advanceWatermark(long newWatermark) throws Exception {
+        if (newWatermark <= watermark) {
+            return;
+        }
+        watermark = newWatermark;
+        long bound = nonFIFO ? watermark - ROUNDING_SLACK : watermark;
+        emitGroupsBefore(bound);
+    }
+
+    /**
+     * Emits all open groups, e.g. at the end of a finite input
+     *
+     * @throws Exception
+     */
+    public void flush() throws Exception {
+        emitGroupsBefore(Long.MAX_VALUE);
+    }
+
+    public void emitGroupsBefore(long bound) throws Exception {
+        for (StreamingSegment segment : segments.values()) {
+            while (segment.hasGroupBefore(bound)) {
+                Batch batch = segment.closeFirstGroup(minBatchSize, sketch);
+                if (batch != null) {
+                    listener.onBatch(segment, batch);
+                }
+            }
+            if (segment.changed) {
+                segment.changed = false;
+                listener.onSegmentStatistics(segment);
+            }
+        }
+    }
+
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public Collection<StreamingSegment> getSegments() {
+        return segments.values();
+    }
+
+    /**
+     * Formats the rolling statistics of a streaming segment as a row of streaming_segment_statistics.csv
+     *
+     * @param segment
+     * @param watermark
+     * @return row
+     */
+    public static String formatSegmentStatistics(StreamingSegment segment, long watermark) {
+        String row = segment.getName() + "," + BatchMiner.formatDate(watermark) + "," + segment.getTotalNrTraces() + "," + segment.getBatchPercentage() + "," + segment.getNrBatches() + ",";
+        row += formatRunningStatistics(segment.getBatchSizeStatistics()) + ",";
+        row += formatRunningStatistics(segment.getBatchIntervalStatistics()) + ",";
+        row += formatRunningStatistics(segment.getBatchedCaseWaitingTimeStatistics()) + ",";
+        row += formatRunningStatistics(segment.getNonBatchedCaseWaitingTimeStatistics()) + ",";
+        row += BatchMiner.formatPercentiles(segment.getBatchedCaseWaitingTimeSketch()) + ",";
+        row += BatchMiner.formatPercentiles(segment.getNonBatchedCaseWaitingTimeSketch()) + ",";
+        row += segment.getNrOpenTraces() + "," + segment.getNrLateObservations();
+        return row;
+    }
+
+    public static String formatRunningStatistics(RunningStatistics statistics) {
+        if (statistics.getCount() == 0) {
+            return "-,-";
+        }
+        return statistics.getMean() + "," + statistics.getStandardDeviation();
+    }
+
+    /**
+     * Reads the next complete line; in follow mode a line without its terminating newline is kept until the rest of
+     * it has been written, and the end of the input is awaited instead of returned
+     *
+     * @param reader
+     * @param line
+     * @param follow
+     * @return line, or null at the end of the input
+     * @throws Exception
+     */
+    public static String readLine(Reader reader, StringBuilder line, boolean follow) throws Exception {
+        while (true) {
+            int c = reader.read();
+            if (c == '\n') {
+                String result = line.toString();
+                line.setLength(0);
+                return result;
+            } else if (c == -1) {
+                if (!follow) {
+                    String result = line.length() > 0 ? line.toString() : null;
+                    line.setLength(0);
+                    return result;
+                }
+                Thread.sleep(500);
+            } else if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Main method: detects batches online in a stream of PSM rows (caseID, segment, start, duration) read from stdin
+     * ("-") or a file, which is followed like "tail -f" if requested (stdin is always read until its end). Rows are
+     * parsed like the CSV files of a batch run, so quoted fields give the same observations. Batches are appended to
+     * streaming_batch_statistics.csv as soon as the watermark passes their end time, together with the rolling
+     * statistics of the affected segments in streaming_segment_statistics.csv.
+     *
+     * Arguments: input minBatchSize allowedLatenessMillis nonFIFO(y/n) follow(y/n) outputDirectory
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String args[]) throws Exception {
+        String input = args[0];
+        int minBatchSize = Integer.parseInt(args[1]);
+        long allowedLateness = Long.parseLong(args[2]);
+        boolean nonFIFO = args[3].equals("y");
+        boolean follow = args[4].equals("y");
+        String outputDirectory = args[5];
+
+        FileWriter batchWriter = new FileWriter(outputDirectory + "\\Statistics\\streaming_batch_statistics.csv");
+        batchWriter.write("segmentKey,i,k_i,t_{bi_dep},mu_{IBIA_i},sigma{IBIA_i},mu_{Wo_bi},sigma{Wo_bi},W_{i_min},W{i_max},p50_{Wo_bi},p90_{Wo_bi},p99_{Wo_bi}");
+        batchWriter.write("\n");
+        FileWriter segmentWriter = new FileWriter(outputDirectory + "\\Statistics\\streaming_segment_statistics.csv");
+        segmentWriter.write("segmentKey,watermark,n,BF,m,mu_k,sigma_k,mu_BI,sigma_BI,mu_{Wo_b},sigma_{Wo_b},mu_{Wo_nb},sigma_{Wo_nb},p50_{Wo_b},p90_{Wo_b},p99_{Wo_b},p50_{Wo_nb},p90_{Wo_nb},p99_{Wo_nb},open,late");
+        segmentWriter.write("\n");
+
+        StreamingBatchMiner miner = new StreamingBatchMiner(minBatchSize, nonFIFO, allowedLateness, null);
+        miner.listener = new StreamingListener() {
+            @Override
+            public void onBatch(StreamingSegment segment, Batch batch) throws Exception {
+                batchWriter.write(BatchMiner.formatBatchStatistics(segment.getName(), segment.getNrBatches(), batch));
+                batchWriter.write("\n");
+                batchWriter.flush();
+            }
+            @Override
+            public void onSegmentStatistics(StreamingSegment segment) throws Exception {
+                segmentWriter.write(formatSegmentStatistics(segment, miner.getWatermark()));
+                segmentWriter.write("\n");
+                segmentWriter.flush();
+            }
+        };
+
+        Reader reader;
+        if (input.equals("-")) {
+            reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            // a pipe that has ended cannot grow again, so only files are followed
+            follow = false;
+        } else {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8));
+        }
+        CSVParser parser = new CSVParser();
+        StringBuilder buffer = new StringBuilder();
+        String line;
+        while ((line = readLine(reader, buffer, follow)) != null) {
+            String[] csvRow;
+            try {
+                csvRow = parser.parseLine(line);
+            } catch (IOException e) {
+                // unterminated quoted field
+                continue;
+            }
+            if (csvRow.length < 4) {
+                continue;
+            }
+            try {
+                miner.accept(Observation.fromCSVRow(csvRow));
+            } catch (NumberFormatException e) {
+                // header or malformed row
+            }
+        }
+        miner.flush();
+        reader.close();
+        batchWriter.close();
+        segmentWriter.close();
+    }
+}
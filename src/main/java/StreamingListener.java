@@ -0,0 +1,18 @@
+public interface StreamingListener {
+    /**
+     * Called once for every batch, as soon as the watermark has passed its end time
+     *
+     * @param segment
+     * @param batch
+     * @throws Exception
+     */
+    void onBatch(StreamingSegment segment, Batch batch) throws Exception;
+
+    /**
+     * Called after a watermark advance for every segment whose rolling statistics changed
+     *
+     * @param segment
+     * @throws Exception
+     */
+    void onSegmentStatistics(StreamingSegment segment) throws Exception;
+}
@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+public class StreamingSegment {
+    public String name;
+
+    // candidate groups that may still receive observations, keyed by (rounded) end time
+    public TreeMap<Long, List<Trace>> openGroups;
+    public int nrOpenTraces;
+
+    // rolling segment statistics over all closed groups
+    public long totalNrTraces;
+    public long nrTracesInBatch;
+    public int nrBatches;
+    public long lastBatchEnd;
+    public long nrLateObservations;
+    public boolean changed;
+    public RunningStatistics batchSizeStatistics;
+    public RunningStatistics batchIntervalStatistics;
+    public RunningStatistics batchedCaseWaitingTimeStatistics;
+    public RunningStatistics nonBatchedCaseWaitingTimeStatistics;
+    public QuantileSketch batchedCaseWaitingTimeSketch;
+    public QuantileSketch nonBatchedCaseWaitingTimeSketch;
+
+    public StreamingSegment(String name) {
+        this.name = name;
+        this.openGroups = new TreeMap<>();
+        this.lastBatchEnd = Long.MIN_VALUE;
+        this.batchSizeStatistics = new RunningStatistics();
+        this.batchIntervalStatistics = new RunningStatistics();
+        this.batchedCaseWaitingTimeStatistics = new RunningStatistics();
+        this.nonBatchedCaseWaitingTimeStatistics = new RunningStatistics();
+        this.batchedCaseWaitingTimeSketch = new QuantileSketch();
+        this.nonBatchedCaseWaitingTimeSketch = new QuantileSketch();
+    }
+
+    /**
+     * Adds an observation to the open candidate group of its (rounded) end time
+     *
+     * @param trace
+     * @param key
+     */
+    public void add(Trace trace, long key) {
+        List<Trace> group = openGroups.get(key);
+        if (group == null) {
+            group = new ArrayList<>();
+            openGroups.put(key, group);
+        }
+        group.add(trace);
+        nrOpenTraces++;
+    }
+
+    /**
+     * Closes the oldest open group: the group becomes a batch if it holds at least minBatchSize observations (the same
+     * constraints as listBatches on a sorted segment), and the rolling statistics are updated
+     *
+     * @param minBatchSize
+     * @param sketch scratch sketch for the batch percentiles
+     * @return batch, or null if the closed group is no batch
+     */
+    public Batch closeFirstGroup(int minBatchSize, QuantileSketch sketch) {
+        List<Trace> group = openGroups.firstEntry().getValue();
+        openGroups.pollFirstEntry();
+        nrOpenTraces -= group.size();
+        totalNrTraces += group.size();
+        changed = true;
+
+        group.sort(Comparator.comparing(Trace::getStart));
+        boolean batched = group.size() >= minBatchSize;
+        for (int i = 0; i < group.size(); i++) {
+            Trace trace = group.get(i);
+            trace.setBatched(batched);
+            double waitingTime = 1.0 * trace.getDuration() / 3600000;
+            if (batched) {
+                batchedCaseWaitingTimeStatistics.add(waitingTime);
+                batchedCaseWaitingTimeSketch.add(waitingTime);
+            } else {
+                nonBatchedCaseWaitingTimeStatistics.add(waitingTime);
+                nonBatchedCaseWaitingTimeSketch.add(waitingTime);
+            }
+        }
+        if (!batched) {
+            return null;
+        }
+        Batch batch = new Batch(group);
+        BatchStatisticsTask.calculate(batch, sketch);
+        nrBatches++;
+        nrTracesInBatch += batch.getSize();
+        batchSizeStatistics.add(batch.getSize());
+        if (lastBatchEnd != Long.MIN_VALUE) {
+            batchIntervalStatistics.add(1.0 * (batch.getEndWait() - lastBatchEnd) / 3600000);
+        }
+        lastBatchEnd = batch.getEndWait();
+        return batch;
+    }
+
+    public boolean hasGroupBefore(long bound) {
+        return !openGroups.isEmpty() && openGroups.firstKey() < bound;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNrOpenTraces() {
+        return nrOpenTraces;
+    }
+
+    public long getTotalNrTraces() {
+        return totalNrTraces;
+    }
+
+    public int getNrBatches() {
+        return nrBatches;
+    }
+
+    public long getNrLateObservations() {
+        return nrLateObservations;
+    }
+
+    public double getBatchPercentage() {
+        return 100.0 * nrTracesInBatch / totalNrTraces;
+    }
+
+    public RunningStatistics getBatchSizeStatistics() {
+        return batchSizeStatistics;
+    }
+
+    public RunningStatistics getBatchIntervalStatistics() {
+        return batchIntervalStatistics;
+    }
+
+    public RunningStatistics getBatchedCaseWaitingTimeStatistics() {
+        return batchedCaseWaitingTimeStatistics;
+    }
+
+    public RunningStatistics getNonBatchedCaseWaitingTimeStatistics() {
+        return nonBatchedCaseWaitingTimeStatistics;
+    }
+
+    public QuantileSketch getBatchedCaseWaitingTimeSketch() {
+        return batchedCaseWaitingTimeSketch;
+    }
+
+    public QuantileSketch getNonBatchedCaseWaitingTimeSketch() {
+        return nonBatchedCaseWaitingTimeSketch;
+    }
+}
@@ -0,0 +1,156 @@
+/* E.L. Klijn
+ * Performance Mining for Batch Processing Using the Performance Spectrum
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class SyntheticLogGenerator {
+    public static final long FIRST_ARRIVAL = 1546300800000L; //01-01-2019 00:00 UTC
+    public static final long MEAN_INTER_ARRIVAL_TIME = 600000L; //10 minutes
+    public static final long MEAN_WAITING_TIME = 7200000L; //2 hours
+
+    public int nrSegments;
+    public int rowsPerSegment;
+    public int filesPerSegment;
+    // fraction of the cases that are batched, and mean size of the batches
+    public double batchFraction;
+    public double meanBatchSize;
+    // rows are written out of order, each delayed by a random time of up to this many milliseconds
+    public long disorder;
+    public long seed;
+
+    public SyntheticLogGenerator(int nrSegments, int rowsPerSegment, int filesPerSegment, double batchFraction, double meanBatchSize, long disorder, long seed) {
+        this.nrSegments = nrSegments;
+        this.rowsPerSegment = rowsPerSegment;
+        this.filesPerSegment = filesPerSegment;
+        this.batchFraction = batchFraction;
+        this.meanBatchSize = meanBatchSize;
+        this.disorder = disorder;
+        this.seed = seed;
+    }
+
+    public static String getActivity(int k) {
+        return "A" + (k + 1);
+    }
+
+    public static long exponential(SplittableRandom random, long mean) {
+        return (long) (-mean * Math.log(1.0 - random.nextDouble()));
+    }
+
+    // batch sizes are geometrically distributed with the given mean
+    public int nextBatchSize(SplittableRandom random) {
+        if (meanBatchSize <= 1) {
+            return 1;
+        }
+        return 1 + (int) (Math.log(1.0 - random.nextDouble()) / Math.log(1.0 - 1.0 / meanBatchSize));
+    }
+
+    public static Integer[] sortCases(long[] keys) {
+        Integer[] cases = new Integer[keys.length];
+        for (int i = 0; i < cases.length; i++) {
+            cases[i] = i;
+        }
+        Arrays.sort(cases, Comparator.comparingLong(i -> keys[i]));
+        return cases;
+    }
+
+    /**
+     * Writes a PSM export of a process that is a chain of activities A1, A2, ..., in which every case passes all
+     * segments Ak:Ak+1 and enters a segment when it leaves the previous one. Within a segment, batched cases wait until
+     * their batch is complete and leave together; the other cases leave after an exponentially distributed waiting
+     * time. The rows of a segment are spread round-robin over filesPerSegment files, in directories part-1, part-2, ...
+     *
+     * @param directory
+     * @throws Exception
+     */
+    public void generate(String directory) throws Exception {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] starts = new long[rowsPerSegment];
+        long[] ends = new long[rowsPerSegment];
+        long[] writeKeys = new long[rowsPerSegment];
+        long time = FIRST_ARRIVAL;
+        for (int i = 0; i < rowsPerSegment; i++) {
+            time += exponential(random, MEAN_INTER_ARRIVAL_TIME);
+            starts[i] = time;
+        }
+
+        for (int k = 0; k < nrSegments; k++) {
+            String segment = getActivity(k) + ":" + getActivity(k + 1);
+            Integer[] byArrival = sortCases(starts);
+            int batchStart = 0;
+            int[] batch = new int[rowsPerSegment];
+            int batchSize = nextBatchSize(random);
+            for (int r = 0; r < rowsPerSegment; r++) {
+                int i = byArrival[r];
+                if (random.nextDouble() < batchFraction) {
+                    batch[batchStart++] = i;
+                    if (batchStart == batchSize) {
+                        // the batch is processed some time after its last case arrived
+                        long release = starts[i] + 1 + exponential(random, MEAN_WAITING_TIME / 4);
+                        for (int b = 0; b < batchStart; b++) {
+                            ends[batch[b]] = release;
+                        }
+                        batchStart = 0;
+                        batchSize = nextBatchSize(random);
+                    }
+                } else {
+                    ends[i] = starts[i] + 1 + exponential(random, MEAN_WAITING_TIME);
+                }
+            }
+            if (batchStart > 0) {
+                long release = starts[byArrival[rowsPerSegment - 1]] + 1;
+                for (int b = 0; b < batchStart; b++) {
+                    ends[batch[b]] = release;
+                }
+            }
+
+            for (int i = 0; i < rowsPerSegment; i++) {
+                writeKeys[i] = starts[i] + (disorder > 0 ? random.nextLong(disorder + 1) : 0);
+            }
+            Integer[] byWriteKey = sortCases(writeKeys);
+            String fileName = getActivity(k) + "!" + getActivity(k + 1) + ".csv";
+            BufferedWriter[] writers = new BufferedWriter[filesPerSegment];
+            try {
+                for (int j = 0; j < filesPerSegment; j++) {
+                    Path file = Paths.get(directory, "part-" + (j + 1), fileName);
+                    Files.createDirectories(file.getParent());
+                    writers[j] = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                }
+                for (int r = 0; r < rowsPerSegment; r++) {
+                    int i = byWriteKey[r];
+                    BufferedWriter writer = writers[r % filesPerSegment];
+                    writer.write("case" + i + "," + segment + "," + starts[i] + "," + (ends[i] - starts[i]));
+                    writer.write("\n");
+                }
+            } finally {
+                for (BufferedWriter writer : writers) {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                }
+            }
+
+            // every case enters the next segment when it leaves this one
+            long[] next = starts;
+            starts = ends;
+            ends = next;
+        }
+    }
+
+    /**
+     * Main method: writes a synthetic PSM export
+     *
+     * Arguments: outputDirectory nrSegments rowsPerSegment filesPerSegment batchFraction meanBatchSize disorderMs seed
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String args[]) throws Exception {
+        SyntheticLogGenerator generator = new SyntheticLogGenerator(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                Double.parseDouble(args[4]), Double.parseDouble(args[5]), Long.parseLong(args[6]), Long.parseLong(args[7]));
+        generator.generate(args[0]);
+    }
+}